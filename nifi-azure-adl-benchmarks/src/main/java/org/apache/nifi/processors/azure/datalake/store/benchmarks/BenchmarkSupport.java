@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Random;
+import org.apache.nifi.azure.datalake.store.LocalAzureDataLakeStoreFileSystemService;
+import org.apache.nifi.processor.Processor;
+import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+
+/**
+ * Sets up processors against a local file system service in a temporary
+ * directory, so the benchmarks measure the processors and the service rather
+ * than the network.
+ */
+final class BenchmarkSupport {
+
+    static final String SERVICE_ID = "adls";
+    static final String ACCOUNT = "bench";
+
+    private BenchmarkSupport() {
+    }
+
+    static File createRoot() throws IOException {
+        return Files.createTempDirectory("adls-bench").toFile();
+    }
+
+    /**
+     * @param serviceProperties additional properties of the local service, e.g. simulated latency
+     */
+    static TestRunner createRunner(final Class<? extends Processor> processorClass, final File root, final Map<String, String> serviceProperties)
+            throws InitializationException {
+        final TestRunner runner = TestRunners.newTestRunner(processorClass);
+        final LocalAzureDataLakeStoreFileSystemService service = new LocalAzureDataLakeStoreFileSystemService();
+        runner.addControllerService(SERVICE_ID, service);
+        runner.setProperty(service, LocalAzureDataLakeStoreFileSystemService.ROOT_DIRECTORY, root.getAbsolutePath());
+        runner.setProperty(service, LocalAzureDataLakeStoreFileSystemService.ACCOUNT_NAME, ACCOUNT);
+        for (final Map.Entry<String, String> property : serviceProperties.entrySet()) {
+            runner.setProperty(service, property.getKey(), property.getValue());
+        }
+        runner.enableControllerService(service);
+        return runner;
+    }
+
+    /**
+     * Runs the @OnScheduled methods of the processor once, so that each benchmark invocation only
+     * has to trigger it, as the framework does between scheduling and stopping a processor.
+     */
+    static void schedule(final TestRunner runner) {
+        runner.run(1, false, true);
+    }
+
+    /**
+     * Runs the @OnUnscheduled and @OnStopped methods of a processor started by {@link #schedule(TestRunner)}.
+     */
+    static void stop(final TestRunner runner) {
+        runner.run(0, true, false);
+    }
+
+    /**
+     * Triggers the processor once without running its lifecycle methods.
+     */
+    static void trigger(final TestRunner runner) {
+        runner.run(1, false, false);
+    }
+
+    /**
+     * @return the local directory that holds the given path of the benchmark account
+     */
+    static File resolve(final File root, final String path) {
+        return new File(new File(root, ACCOUNT), path);
+    }
+
+    static byte[] randomContent(final int size) {
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    static void deleteRecursively(final File directory) throws IOException {
+        if (!directory.exists()) {
+            return;
+        }
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.apache.nifi.processors.azure.datalake.store.FetchAzureDataLakeStoreFile;
+import org.apache.nifi.util.TestRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Downloads the same file into one FlowFile per invocation through FetchAzureDataLakeStoreFile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class FetchAzureDataLakeStoreFileBenchmark {
+
+    @Param({"1024", "1048576", "16777216"})
+    public int fileSize;
+
+    // Compare against None to see what the inline checksum costs
+    @Param({"None", "CRC32C", "MD5", "SHA-256"})
+    public String checksumAlgorithm;
+
+    private File root;
+    private TestRunner runner;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = BenchmarkSupport.createRoot();
+        final File file = BenchmarkSupport.resolve(root, "/fetch/file");
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), BenchmarkSupport.randomContent(fileSize));
+
+        runner = BenchmarkSupport.createRunner(FetchAzureDataLakeStoreFile.class, root, Collections.<String, String>emptyMap());
+        runner.setProperty(FetchAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, BenchmarkSupport.SERVICE_ID);
+        runner.setProperty(FetchAzureDataLakeStoreFile.CHECKSUM_ALGORITHM, checksumAlgorithm);
+        runner.setProperty(FetchAzureDataLakeStoreFile.FILENAME, "/fetch/file");
+        BenchmarkSupport.schedule(runner);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkSupport.stop(runner);
+        BenchmarkSupport.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public void fetch() {
+        runner.enqueue(new byte[0]);
+        BenchmarkSupport.trigger(runner);
+        runner.clearTransferState();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.apache.nifi.processors.azure.datalake.store.ListAzureDataLakeStore;
+import org.apache.nifi.util.TestRunner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Performs a full recursive listing per invocation through ListAzureDataLakeStore.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class ListAzureDataLakeStoreBenchmark {
+
+    // Two file filters that match the same files. Switching between them makes the processor forget
+    // the time of its last listing, so every invocation lists the whole tree.
+    private static final String[] FILE_FILTERS = {"[^\\.].*", "([^\\.].*)"};
+
+    @Param({"100", "10000"})
+    public int fileCount;
+
+    /**
+     * flat: all files in one directory. deep: ten subdirectories per directory, ten files per leaf directory.
+     */
+    @Param({"flat", "deep"})
+    public String treeShape;
+
+    private File root;
+    private TestRunner runner;
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = BenchmarkSupport.createRoot();
+        final File listRoot = BenchmarkSupport.resolve(root, "/list");
+        for (int i = 0; i < fileCount; i++) {
+            final File file = new File(new File(listRoot, directoryOf(i)), "file-" + i);
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), new byte[0]);
+        }
+
+        runner = BenchmarkSupport.createRunner(ListAzureDataLakeStore.class, root, Collections.<String, String>emptyMap());
+        runner.setProperty("Azure Data Lake Store File System Service", BenchmarkSupport.SERVICE_ID);
+        runner.setProperty(ListAzureDataLakeStore.DIRECTORY, "/list");
+        runner.setProperty(ListAzureDataLakeStore.RECURSE, "true");
+        BenchmarkSupport.schedule(runner);
+    }
+
+    private String directoryOf(final int fileIndex) {
+        if ("flat".equals(treeShape)) {
+            return "";
+        }
+        // Spell out the leaf number as a path of single digits, e.g. leaf 123 becomes 1/2/3
+        final String leaf = Integer.toString(fileIndex / 10);
+        final StringBuilder path = new StringBuilder();
+        for (final char digit : leaf.toCharArray()) {
+            path.append(digit).append('/');
+        }
+        return path.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkSupport.stop(runner);
+        BenchmarkSupport.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public void list() throws IOException {
+        runner.setProperty(ListAzureDataLakeStore.FILE_FILTER, FILE_FILTERS[invocation++ % FILE_FILTERS.length]);
+        // The stored state is otherwise only cleared when the processor is scheduled
+        runner.getStateManager().clear(org.apache.nifi.components.state.Scope.CLUSTER);
+        BenchmarkSupport.trigger(runner);
+        runner.clearTransferState();
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store;
+
+import com.microsoft.azure.CloudException;
+import com.microsoft.azure.management.datalake.store.models.FileStatusProperties;
+import com.microsoft.azure.management.datalake.store.models.FileType;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.apache.nifi.annotation.behavior.InputRequirement;
+import org.apache.nifi.annotation.behavior.TriggerSerially;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.SeeAlso;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.azure.datalake.store.AzureDataLakeStoreFileSystemServiceInterface;
+import org.apache.nifi.azure.datalake.store.RequestPriority;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.processor.AbstractProcessor;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.ProcessorInitializationContext;
+import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.util.StandardValidators;
+
+@TriggerSerially
+@InputRequirement(InputRequirement.Requirement.INPUT_FORBIDDEN)
+@Tags({"Azure", "Data Lake Store", "compact", "concatenate", "merge", "small files"})
+@CapabilityDescription("Merges the small files of a directory on Azure Data Lake Store into fewer, larger files. Files are grouped into batches of "
+        + "about the Target Size, either in order of age or by the time window they were last modified in, and each batch is concatenated by the "
+        + "server into one new file in the same directory; no content passes through NiFi. Concatenation consumes its source files in the same "
+        + "request, so an interrupted run leaves either the sources or the merged file, never both, and the next run simply groups whatever "
+        + "is left. A FlowFile without content is emitted for every merged file")
+@SeeAlso({ListAzureDataLakeStore.class, PutAzureDataLakeStoreFile.class})
+@WritesAttributes({
+    @WritesAttribute(attribute = "filename", description = "The name of the merged file"),
+    @WritesAttribute(attribute = "path", description = "The directory of the merged file"),
+    @WritesAttribute(attribute = "absolute.path", description = "The directory of the merged file"),
+    @WritesAttribute(attribute = "file.length", description = "The length of the merged file"),
+    @WritesAttribute(attribute = "compaction.source.count", description = "The number of files merged into the file")})
+public class CompactAzureDataLakeStoreDirectory extends AbstractProcessor {
+
+    static final String GROUP_BY_SIZE = "Size";
+    static final String GROUP_BY_TIME_WINDOW = "Time Window";
+
+    public static final String SOURCE_COUNT_ATTRIBUTE = "compaction.source.count";
+
+    public static final PropertyDescriptor ADLS_CLIENT_SERVICE = new PropertyDescriptor.Builder()
+            .name("Azure Data Lake Store Client Service")
+            .description("Specifies the Controller Service to use for accessing Azure Data Lake Store.")
+            .required(true)
+            .identifiesControllerService(AzureDataLakeStoreFileSystemServiceInterface.class)
+            .build();
+
+    public static final PropertyDescriptor DIRECTORY = new PropertyDescriptor.Builder()
+            .name("Directory")
+            .description("The directory whose files are compacted. Subdirectories are left alone")
+            .required(true)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .expressionLanguageSupported(true)
+            .build();
+
+    public static final PropertyDescriptor FILE_FILTER = new PropertyDescriptor.Builder()
+            .name("File Filter")
+            .description("Only files whose names match the given regular expression are compacted")
+            .required(true)
+            .defaultValue("[^\\.].*")
+            .addValidator(StandardValidators.REGULAR_EXPRESSION_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor GROUPING_STRATEGY = new PropertyDescriptor.Builder()
+            .name("Grouping Strategy")
+            .description("How files are grouped. Size: files are taken oldest first, and a batch is merged once the next file would not fit "
+                    + "in it; files that do not yet fill a batch wait for more, until the oldest of them reaches the Maximum Batch Age. Time Window: files are grouped by the Time Window their last "
+                    + "modification falls in, and a window is merged, in batches of up to the Target Size, once it has ended and its files "
+                    + "are older than the Minimum File Age")
+            .required(true)
+            .allowableValues(GROUP_BY_SIZE, GROUP_BY_TIME_WINDOW)
+            .defaultValue(GROUP_BY_SIZE)
+            .build();
+
+    public static final PropertyDescriptor TARGET_SIZE = new PropertyDescriptor.Builder()
+            .name("Target Size")
+            .description("The size that merged files should reach. A batch never grows beyond it")
+            .required(true)
+            .defaultValue("256 MB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor TIME_WINDOW = new PropertyDescriptor.Builder()
+            .name("Time Window")
+            .description("The length of the windows files are grouped into, aligned to midnight UTC, e.g. 1 hour. "
+                    + "Required with the Time Window Grouping Strategy")
+            .required(false)
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MAX_BATCH_AGE = new PropertyDescriptor.Builder()
+            .name("Maximum Batch Age")
+            .description("With the Size Grouping Strategy, files that do not fill a batch are merged anyway once the oldest of them was "
+                    + "modified this long ago, so a directory that never accumulates the Target Size is still compacted")
+            .required(true)
+            .defaultValue("1 hour")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MAX_SOURCE_FILE_SIZE = new PropertyDescriptor.Builder()
+            .name("Maximum Source File Size")
+            .description("Files at least this large are not small and are never merged")
+            .required(true)
+            .defaultValue("64 MB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MIN_FILE_AGE = new PropertyDescriptor.Builder()
+            .name("Minimum File Age")
+            .description("Files modified more recently than this are left alone, since they may still be being written")
+            .required(true)
+            .defaultValue("5 mins")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor COMPACTED_FILE_PREFIX = new PropertyDescriptor.Builder()
+            .name("Compacted File Prefix")
+            .description("The prefix of the names of merged files. Files with this prefix are never merged again, so merged data from "
+                    + "different batches or windows is not mixed")
+            .required(true)
+            .defaultValue("compacted-")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor REQUEST_PRIORITY = new PropertyDescriptor.Builder()
+            .name("Request Priority")
+            .description("The priority class of this processor's requests when the Azure Data Lake Store service's bandwidth or request rate "
+                    + "limit is reached. HIGH, NORMAL and LOW get shares of the limit in a ratio of 4:2:1")
+            .required(true)
+            .allowableValues(RequestPriority.HIGH.name(), RequestPriority.NORMAL.name(), RequestPriority.LOW.name())
+            .defaultValue(RequestPriority.NORMAL.name())
+            .build();
+
+    static final Relationship REL_SUCCESS = new Relationship.Builder()
+            .name("SUCCESS")
+            .description("A FlowFile describing each merged file is routed to success")
+            .build();
+
+    // Merged files are named after the start of their window or their oldest file, in UTC
+    private static final String TIMESTAMP_FORMAT = "yyyyMMdd'T'HHmmss'Z'";
+
+    private static final Comparator<FileStatusProperties> OLDEST_FIRST = new Comparator<FileStatusProperties>() {
+        @Override
+        public int compare(final FileStatusProperties first, final FileStatusProperties second) {
+            final int byTime = Long.compare(first.getModificationTime(), second.getModificationTime());
+            return byTime != 0 ? byTime : first.getPathSuffix().compareTo(second.getPathSuffix());
+        }
+    };
+
+    private List<PropertyDescriptor> descriptors;
+    private Set<Relationship> relationships;
+
+    @Override
+    protected void init(final ProcessorInitializationContext context) {
+        final List<PropertyDescriptor> props = new ArrayList<>();
+        props.add(ADLS_CLIENT_SERVICE);
+        props.add(DIRECTORY);
+        props.add(FILE_FILTER);
+        props.add(GROUPING_STRATEGY);
+        props.add(TARGET_SIZE);
+        props.add(TIME_WINDOW);
+        props.add(MAX_BATCH_AGE);
+        props.add(MAX_SOURCE_FILE_SIZE);
+        props.add(MIN_FILE_AGE);
+        props.add(COMPACTED_FILE_PREFIX);
+        props.add(REQUEST_PRIORITY);
+        this.descriptors = Collections.unmodifiableList(props);
+
+        final Set<Relationship> relations = new HashSet<>();
+        relations.add(REL_SUCCESS);
+        this.relationships = Collections.unmodifiableSet(relations);
+    }
+
+    @Override
+    public Set<Relationship> getRelationships() {
+        return this.relationships;
+    }
+
+    @Override
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
+    }
+
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        final List<ValidationResult> results = new ArrayList<>();
+        if (GROUP_BY_TIME_WINDOW.equals(context.getProperty(GROUPING_STRATEGY).getValue()) && !context.getProperty(TIME_WINDOW).isSet()) {
+            results.add(new ValidationResult.Builder().subject(TIME_WINDOW.getName()).valid(false)
+                    .explanation("a Time Window is required when grouping by time window").build());
+        }
+        return results;
+    }
+
+    @Override
+    public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
+
+        RequestPriority.setCurrent(RequestPriority.valueOf(context.getProperty(REQUEST_PRIORITY).getValue()));
+        try {
+            compact(context, session);
+        } finally {
+            RequestPriority.clearCurrent();
+        }
+    }
+
+    private void compact(final ProcessContext context, final ProcessSession session) {
+        final ComponentLog logger = this.getLogger();
+
+        final AzureDataLakeStoreFileSystemServiceInterface adlsService = context.getProperty(ADLS_CLIENT_SERVICE).asControllerService(AzureDataLakeStoreFileSystemServiceInterface.class);
+
+        String directory = context.getProperty(DIRECTORY).evaluateAttributeExpressions().getValue();
+        if (directory.length() > 1 && directory.endsWith("/")) {
+            directory = directory.substring(0, directory.length() - 1);
+        }
+
+        final List<FileStatusProperties> listing;
+        try {
+            listing = adlsService.listFileStatus(directory);
+        } catch (final IOException | CloudException ex) {
+            logger.error("Failed to list {} for compaction due to {}", new Object[]{directory, ex});
+            context.yield();
+            return;
+        }
+
+        final List<Batch> batches = createBatches(context, directory, listing);
+        if (batches.isEmpty()) {
+            context.yield();
+            return;
+        }
+
+        // Start every concatenation before waiting for any; batches are independent of each other
+        final String prefix = context.getProperty(COMPACTED_FILE_PREFIX).getValue();
+        final List<Future<Void>> results = new ArrayList<>(batches.size());
+        final long startNanos = System.nanoTime();
+        for (final Batch batch : batches) {
+            batch.destination = chooseDestination(directory, prefix, batch);
+            results.add(adlsService.concatenateFilesAsync(batch.sources, batch.destination, null));
+        }
+
+        int merged = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            final Batch batch = batches.get(i);
+            try {
+                AdlsFutures.await(results.get(i));
+            } catch (final IllegalArgumentException | IOException | CloudException ex) {
+                logger.error("Failed to merge {} files of {} into {} due to {}", new Object[]{batch.sources.size(), directory, batch.destination, ex});
+                continue;
+            } catch (final ProcessException ex) {
+                // Merges that already finished have replaced their sources on the server, so report them before giving up
+                for (int j = i + 1; j < batches.size(); j++) {
+                    if (results.get(j).isDone() && succeeded(results.get(j))) {
+                        transferMerged(session, directory, batches.get(j));
+                    }
+                }
+                session.commit();
+                throw ex;
+            }
+            merged++;
+            transferMerged(session, directory, batch);
+        }
+
+        logger.info("Merged {} of {} batches of small files in {} in {} milliseconds",
+                new Object[]{merged, batches.size(), directory, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)});
+    }
+
+    private static boolean succeeded(final Future<Void> result) {
+        try {
+            AdlsFutures.await(result);
+            return true;
+        } catch (final IllegalArgumentException | IOException | CloudException | ProcessException ex) {
+            return false;
+        }
+    }
+
+    private static void transferMerged(final ProcessSession session, final String directory, final Batch batch) {
+        final String filename = batch.destination.substring(batch.destination.lastIndexOf('/') + 1);
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put(CoreAttributes.FILENAME.key(), filename);
+        attributes.put(CoreAttributes.PATH.key(), directory);
+        attributes.put(CoreAttributes.ABSOLUTE_PATH.key(), directory);
+        attributes.put(ListAzureDataLakeStore.FILE_LENGTH_ATTRIBUTE, String.valueOf(batch.size));
+        attributes.put(SOURCE_COUNT_ATTRIBUTE, String.valueOf(batch.sources.size()));
+        FlowFile flowFile = session.create();
+        flowFile = session.putAllAttributes(flowFile, attributes);
+        session.transfer(flowFile, REL_SUCCESS);
+    }
+
+    private List<Batch> createBatches(final ProcessContext context, final String directory, final List<FileStatusProperties> listing) {
+        final Pattern fileFilter = Pattern.compile(context.getProperty(FILE_FILTER).getValue());
+        final String prefix = context.getProperty(COMPACTED_FILE_PREFIX).getValue();
+        final long targetSize = context.getProperty(TARGET_SIZE).asDataSize(DataUnit.B).longValue();
+        final long maxSourceSize = context.getProperty(MAX_SOURCE_FILE_SIZE).asDataSize(DataUnit.B).longValue();
+        final long minAgeMillis = context.getProperty(MIN_FILE_AGE).asTimePeriod(TimeUnit.MILLISECONDS);
+        final boolean byTimeWindow = GROUP_BY_TIME_WINDOW.equals(context.getProperty(GROUPING_STRATEGY).getValue());
+        final long windowMillis = byTimeWindow ? context.getProperty(TIME_WINDOW).asTimePeriod(TimeUnit.MILLISECONDS) : 0;
+        final long now = System.currentTimeMillis();
+        final long settledBefore = now - minAgeMillis;
+        final long overdueBefore = now - context.getProperty(MAX_BATCH_AGE).asTimePeriod(TimeUnit.MILLISECONDS);
+
+        // All files of a directory are stored on the same account, so they can be concatenated in any combination
+        final Map<Long, List<FileStatusProperties>> groups = new LinkedHashMap<>();
+        for (final FileStatusProperties file : listing) {
+            final String name = file.getPathSuffix();
+            if (file.getType() != FileType.FILE || name.startsWith(prefix) || !fileFilter.matcher(name).matches()
+                    || file.getLength() >= maxSourceSize || file.getModificationTime() > settledBefore) {
+                continue;
+            }
+
+            long window = -1;
+            if (byTimeWindow) {
+                window = file.getModificationTime() / windowMillis * windowMillis;
+                // Later files may still arrive in a window that has not ended
+                if (window + windowMillis > settledBefore) {
+                    continue;
+                }
+            }
+            if (!groups.containsKey(window)) {
+                groups.put(window, new ArrayList<FileStatusProperties>());
+            }
+            groups.get(window).add(file);
+        }
+
+        final List<Batch> batches = new ArrayList<>();
+        for (final Map.Entry<Long, List<FileStatusProperties>> group : groups.entrySet()) {
+            final List<FileStatusProperties> files = group.getValue();
+            Collections.sort(files, OLDEST_FIRST);
+
+            Batch batch = null;
+            for (final FileStatusProperties file : files) {
+                if (batch != null && batch.size + file.getLength() > targetSize) {
+                    addIfWorthMerging(batches, batch);
+                    batch = null;
+                }
+                if (batch == null) {
+                    final long window = group.getKey();
+                    batch = new Batch(window >= 0 ? window : file.getModificationTime());
+                }
+                batch.add(combinePath(directory, file.getPathSuffix()), file.getLength());
+            }
+            // Grouping by size leaves a batch that has not filled up yet to wait for more files, unless it has waited long enough;
+            // a window that has ended gets no more
+            if (batch != null && (byTimeWindow || batch.size >= targetSize || batch.timestamp <= overdueBefore)) {
+                addIfWorthMerging(batches, batch);
+            }
+        }
+        return batches;
+    }
+
+    private static void addIfWorthMerging(final List<Batch> batches, final Batch batch) {
+        if (batch.sources.size() > 1) {
+            batches.add(batch);
+        }
+    }
+
+    /**
+     * Names the merged file after the batch's timestamp, keeping the extension of its first file. A random suffix keeps batches of the
+     * same timestamp apart.
+     */
+    private static String chooseDestination(final String directory, final String prefix, final Batch batch) {
+        final DateFormat formatter = new SimpleDateFormat(TIMESTAMP_FORMAT, Locale.US);
+        formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+        final String firstSource = batch.sources.get(0);
+        final int extension = firstSource.lastIndexOf('.');
+        final String suffix = extension > firstSource.lastIndexOf('/') + 1 ? firstSource.substring(extension) : "";
+
+        return combinePath(directory, prefix + formatter.format(new Date(batch.timestamp)) + "-" + UUID.randomUUID() + suffix);
+    }
+
+    private static String combinePath(final String first, final String second) {
+        if (first.endsWith("/")) {
+            return first + second;
+        } else {
+            return first + "/" + second;
+        }
+    }
+
+    private static class Batch {
+
+        private final long timestamp;
+        private final List<String> sources = new ArrayList<>();
+        private long size;
+        private String destination;
+
+        private Batch(final long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        private void add(final String path, final long length) {
+            sources.add(path);
+            size += length;
+        }
+    }
+}
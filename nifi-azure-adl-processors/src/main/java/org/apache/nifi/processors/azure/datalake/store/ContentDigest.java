@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.zip.Checksum;
+
+/**
+ * A checksum of FlowFile content, updated as the content streams through a
+ * transfer so that it never has to be read a second time.
+ */
+abstract class ContentDigest {
+
+    static final String NONE = "None";
+    static final String CRC32C = "CRC32C";
+    static final String MD5 = "MD5";
+    static final String SHA_256 = "SHA-256";
+
+    static final String CHECKSUM_ALGORITHM_ATTRIBUTE = "checksum.algorithm";
+    static final String CHECKSUM_ATTRIBUTE = "checksum";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * @return a digest for the algorithm, or null for {@link #NONE}
+     */
+    static ContentDigest create(final String algorithm) {
+        if (CRC32C.equals(algorithm)) {
+            return new ChecksumDigest(new Crc32c());
+        } else if (MD5.equals(algorithm) || SHA_256.equals(algorithm)) {
+            try {
+                return new MessageDigestDigest(MessageDigest.getInstance(algorithm));
+            } catch (final NoSuchAlgorithmException e) {
+                // Every Java platform is required to support both
+                throw new IllegalStateException(e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return whether the expected checksum, in hexadecimal of either case, matches the computed one
+     */
+    static boolean matches(final String expected, final String actual) {
+        return expected.trim().toLowerCase(Locale.US).equals(actual);
+    }
+
+    abstract void update(byte[] b, int off, int len);
+
+    /**
+     * @return the checksum of everything passed to {@link #update(byte[], int, int)}, in lowercase hexadecimal
+     */
+    abstract String getValue();
+
+    private static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static class ChecksumDigest extends ContentDigest {
+
+        private final Checksum checksum;
+
+        private ChecksumDigest(final Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        void update(final byte[] b, final int off, final int len) {
+            checksum.update(b, off, len);
+        }
+
+        @Override
+        String getValue() {
+            return String.format("%08x", checksum.getValue());
+        }
+    }
+
+    private static class MessageDigestDigest extends ContentDigest {
+
+        private final MessageDigest digest;
+
+        private MessageDigestDigest(final MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        void update(final byte[] b, final int off, final int len) {
+            digest.update(b, off, len);
+        }
+
+        @Override
+        String getValue() {
+            return toHex(digest.digest());
+        }
+    }
+}
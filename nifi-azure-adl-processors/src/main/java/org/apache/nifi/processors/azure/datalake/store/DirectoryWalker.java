@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store;
+
+import com.microsoft.azure.CloudException;
+import com.microsoft.azure.management.datalake.store.models.FileStatusProperties;
+import com.microsoft.azure.management.datalake.store.models.FileType;
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.apache.nifi.azure.datalake.store.AzureDataLakeStoreFileSystemServiceInterface;
+import org.apache.nifi.processors.azure.datalake.store.model.FileStatusInfo;
+
+/**
+ * Walks a directory tree on Azure Data Lake Store and hands every file that
+ * passes the filter to a visitor as soon as its directory has been listed,
+ * so callers can act on files before the whole tree has been walked.
+ */
+final class DirectoryWalker {
+
+    interface Visitor {
+
+        void visit(FileStatusInfo file) throws IOException;
+    }
+
+    private DirectoryWalker() {
+    }
+
+    static void walk(final AzureDataLakeStoreFileSystemServiceInterface fsService, final String directory, final Pattern fileFilter,
+            final boolean recurse, final Visitor visitor) throws IOException {
+        walk(fsService, directory, directory, fileFilter, recurse, visitor);
+    }
+
+    private static void walk(final AzureDataLakeStoreFileSystemServiceInterface fsService, final String initialDirectory, final String directory,
+            final Pattern fileFilter, final boolean recurse, final Visitor visitor) throws IOException {
+        final List<FileStatusProperties> fileStatus;
+        try {
+            fileStatus = fsService.listFileStatus(directory);
+        } catch (final CloudException e) {
+            throw new IOException("Failed to obtain file listing for " + directory, e);
+        }
+        if (fileStatus == null) {
+            return;
+        }
+
+        for (FileStatusProperties file : fileStatus) {
+            if (file.getType() == FileType.DIRECTORY) {
+                if (recurse) {
+                    walk(fsService, initialDirectory, combinePath(directory, file.getPathSuffix()), fileFilter, true, visitor);
+                }
+            } else if (fileFilter.matcher(file.getPathSuffix()).matches()) {
+
+                String relativePath;
+                if (initialDirectory.equals(directory)) {
+                    relativePath = "./";
+                } else {
+                    relativePath = directory.replace(initialDirectory, "");
+                }
+
+                visitor.visit(new FileStatusInfo.Builder().fileName(file.getPathSuffix())
+                        .absolutePath(directory)
+                        .relativePath(relativePath)
+                        .modificationTime(file.getModificationTime())
+                        .accessTime(file.getAccessTime())
+                        .blockSize(file.getBlockSize())
+                        .childrenNum(file.getChildrenNum())
+                        .group(file.getGroup())
+                        .owner(file.getOwner())
+                        .length(file.getLength())
+                        .permission(file.getPermission())
+                        .build());
+            }
+        }
+    }
+
+    static String combinePath(final String first, final String second) {
+        if (first.endsWith("/")) {
+            return first + second;
+        } else {
+            return first + "/" + second;
+        }
+    }
+}
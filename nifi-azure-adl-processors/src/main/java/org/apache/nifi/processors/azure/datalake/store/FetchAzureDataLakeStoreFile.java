@@ -35,19 +35,27 @@ import org.apache.nifi.processor.io.OutputStreamCallback;
 import org.apache.nifi.stream.io.StreamUtils;
 
 import java.util.*;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import org.apache.nifi.annotation.behavior.InputRequirement;
 import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.logging.ComponentLog;
 import org.apache.nifi.util.StopWatch;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
+import org.apache.nifi.azure.datalake.store.AzureDataLakeStoreCallback;
 import org.apache.nifi.azure.datalake.store.AzureDataLakeStoreFileSystemServiceInterface;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.azure.datalake.store.RequestPriority;
 
 @Tags({"Azure", "Data Lake Store", "get", "files"})
 @CapabilityDescription("Fetches the content of a file from from Azure Data Lake Store and and overwrites the contents of an incoming FlowFile with the content of the Data Lake Store file. If no incoming FlowFile, a new FlowFile is created")
 @SeeAlso({ListAzureDataLakeStore.class, PutAzureDataLakeStoreFile.class})
 @InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
 @WritesAttributes({
-    @WritesAttribute(attribute = "filename", description = "The filename is set to the name of the file on Azure Data Lake")})
+    @WritesAttribute(attribute = "filename", description = "The filename is set to the name of the file on Azure Data Lake"),
+    @WritesAttribute(attribute = "checksum", description = "The checksum of the content, in lowercase hexadecimal, if a Checksum Algorithm is set"),
+    @WritesAttribute(attribute = "checksum.algorithm", description = "The algorithm of the checksum attribute")})
 public class FetchAzureDataLakeStoreFile extends AbstractProcessor {
 
     public static final PropertyDescriptor ADLS_CLIENT_SERVICE = new PropertyDescriptor.Builder()
@@ -66,6 +74,80 @@ public class FetchAzureDataLakeStoreFile extends AbstractProcessor {
             .expressionLanguageSupported(false)
             .build();
 
+    public static final PropertyDescriptor CHECKSUM_ALGORITHM = new PropertyDescriptor.Builder()
+            .name("Checksum Algorithm")
+            .description("The checksum computed over the content as it is downloaded. It is written to the checksum and "
+                    + "checksum.algorithm attributes")
+            .required(true)
+            .allowableValues(ContentDigest.NONE, ContentDigest.CRC32C, ContentDigest.MD5, ContentDigest.SHA_256)
+            .defaultValue(ContentDigest.NONE)
+            .build();
+
+    public static final PropertyDescriptor EXPECTED_CHECKSUM = new PropertyDescriptor.Builder()
+            .name("Expected Checksum")
+            .description("The checksum, in hexadecimal, that the content must have, e.g. ${source.md5}. If the computed checksum differs, the Completion Strategy is not applied and "
+                    + "the FlowFile is routed to failure. Requires a Checksum Algorithm")
+            .required(false)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .expressionLanguageSupported(true)
+            .build();
+
+    public static final PropertyDescriptor REQUEST_PRIORITY = new PropertyDescriptor.Builder()
+            .name("Request Priority")
+            .description("The priority class of this processor's requests when the Azure Data Lake Store service's bandwidth or request rate "
+                    + "limit is reached. HIGH, NORMAL and LOW get shares of the limit in a ratio of 4:2:1")
+            .required(true)
+            .allowableValues(RequestPriority.HIGH.name(), RequestPriority.NORMAL.name(), RequestPriority.LOW.name())
+            .defaultValue(RequestPriority.NORMAL.name())
+            .build();
+
+    static final String COMPLETION_NONE = "None";
+    static final String COMPLETION_DELETE = "Delete File";
+    static final String COMPLETION_MOVE = "Move File";
+
+    public static final PropertyDescriptor COMPLETION_STRATEGY = new PropertyDescriptor.Builder()
+            .name("Completion Strategy")
+            .description("What to do with the file on Azure Data Lake Store once its content is in the flow. The delete or move is requested "
+                    + "in the background after the session is committed, so it adds no latency to the fetch unless 1000 are already outstanding; "
+                    + "if it fails, a warning is logged and the FlowFile is unaffected")
+            .required(true)
+            .allowableValues(COMPLETION_NONE, COMPLETION_DELETE, COMPLETION_MOVE)
+            .defaultValue(COMPLETION_NONE)
+            .build();
+
+    public static final PropertyDescriptor MOVE_DESTINATION_DIRECTORY = new PropertyDescriptor.Builder()
+            .name("Move Destination Directory")
+            .description("The directory fetched files are moved to when the Completion Strategy is Move File. It is created if it does not exist")
+            .required(false)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .expressionLanguageSupported(true)
+            .build();
+
+    public static final PropertyDescriptor LARGE_FILE_THRESHOLD = new PropertyDescriptor.Builder()
+            .name("Large File Threshold")
+            .description("FlowFiles whose file.length attribute, as written by ListAzureDataLakeStore, is at least this size are fetched in a "
+                    + "separate lane limited by Max Concurrent Large Fetches. FlowFiles without a file.length attribute are treated as small")
+            .required(true)
+            .defaultValue("100 MB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MAX_CONCURRENT_LARGE_FETCHES = new PropertyDescriptor.Builder()
+            .name("Max Concurrent Large Fetches")
+            .description("The most large files fetched at once. While the limit is reached, large FlowFiles are left in the queue and the "
+                    + "small FlowFiles behind them are fetched instead. Set this below Concurrent Tasks so that small files always have "
+                    + "threads to run on")
+            .required(true)
+            .defaultValue("1")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
+    // How long stopping the processor waits for outstanding deletes and moves
+    private static final long COMPLETION_DRAIN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    // The most deletes and moves outstanding at once before fetching waits for them
+    private static final int MAX_PENDING_COMPLETIONS = 1000;
+
     static final Relationship REL_SUCCESS = new Relationship.Builder()
             .name("SUCCESS")
             .description("All FlowFiles that are received are routed to success")
@@ -78,12 +160,21 @@ public class FetchAzureDataLakeStoreFile extends AbstractProcessor {
 
     private List<PropertyDescriptor> descriptors;
     private Set<Relationship> relationships;
+    private final PendingCompletions pendingCompletions = new PendingCompletions();
+    private volatile Semaphore largeFetchPermits;
 
     @Override
     protected void init(final ProcessorInitializationContext context) {
         final List<PropertyDescriptor> props = new ArrayList<>();
         props.add(ADLS_CLIENT_SERVICE);
         props.add(FILENAME);
+        props.add(COMPLETION_STRATEGY);
+        props.add(MOVE_DESTINATION_DIRECTORY);
+        props.add(CHECKSUM_ALGORITHM);
+        props.add(EXPECTED_CHECKSUM);
+        props.add(LARGE_FILE_THRESHOLD);
+        props.add(MAX_CONCURRENT_LARGE_FETCHES);
+        props.add(REQUEST_PRIORITY);
         this.descriptors = Collections.unmodifiableList(props);
 
         final Set<Relationship> relations = new HashSet<>();
@@ -102,20 +193,78 @@ public class FetchAzureDataLakeStoreFile extends AbstractProcessor {
         return descriptors;
     }
 
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        final List<ValidationResult> results = new ArrayList<>();
+        if (COMPLETION_MOVE.equals(context.getProperty(COMPLETION_STRATEGY).getValue()) && !context.getProperty(MOVE_DESTINATION_DIRECTORY).isSet()) {
+            results.add(new ValidationResult.Builder().subject(MOVE_DESTINATION_DIRECTORY.getName()).valid(false)
+                    .explanation("a Move Destination Directory is required when the Completion Strategy is Move File").build());
+        }
+        if (context.getProperty(EXPECTED_CHECKSUM).isSet() && ContentDigest.NONE.equals(context.getProperty(CHECKSUM_ALGORITHM).getValue())) {
+            results.add(new ValidationResult.Builder().subject(EXPECTED_CHECKSUM.getName()).valid(false)
+                    .explanation("an Expected Checksum can only be verified with a Checksum Algorithm").build());
+        }
+        return results;
+    }
+
     @OnScheduled
     public void onScheduled(final ProcessContext context) {
+        this.largeFetchPermits = new Semaphore(context.getProperty(MAX_CONCURRENT_LARGE_FETCHES).asInteger());
+    }
+
+    /**
+     * Takes a large-lane permit as a concurrent large fetch would. Used by tests to fill the lane.
+     */
+    boolean occupyLargeFetchLane() {
+        return largeFetchPermits.tryAcquire();
+    }
 
+    void releaseLargeFetchLane() {
+        largeFetchPermits.release();
+    }
+
+    int getAvailableLargeFetches() {
+        return largeFetchPermits.availablePermits();
+    }
+
+    @OnStopped
+    public void onStopped() {
+        final int remaining = pendingCompletions.awaitAll(COMPLETION_DRAIN_MILLIS);
+        if (remaining > 0) {
+            getLogger().warn("{} deletes or moves of fetched files were still outstanding when the processor stopped; "
+                    + "those files may remain in place", new Object[]{remaining});
+        }
     }
 
     @Override
     public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
 
-        final ComponentLog logger = this.getLogger();
-        FlowFile flowFile = session.get();
-        if (flowFile == null) {
+        // Skip past large files while the large lane is full, so they do not hold up the small files queued behind them
+        final Semaphore largeFetches = this.largeFetchPermits;
+        final SizeLaneFilter filter = new SizeLaneFilter(context.getProperty(LARGE_FILE_THRESHOLD).asDataSize(DataUnit.B).longValue(), largeFetches);
+        final List<FlowFile> flowFiles = session.get(filter);
+        if (flowFiles.isEmpty()) {
+            // Only yield when the queue is empty; large files waiting for the lane must not delay a small file that arrives next
+            if (session.getQueueSize().getObjectCount() == 0) {
+                context.yield();
+            }
             return;
         }
 
+        try {
+            fetch(context, session, flowFiles.get(0));
+        } finally {
+            RequestPriority.clearCurrent();
+            if (filter.holdsLargePermit()) {
+                largeFetches.release();
+            }
+        }
+    }
+
+    private void fetch(final ProcessContext context, final ProcessSession session, FlowFile flowFile) {
+
+        final ComponentLog logger = this.getLogger();
+        RequestPriority.setCurrent(RequestPriority.valueOf(context.getProperty(REQUEST_PRIORITY).getValue()));
         final String filename = context.getProperty(FILENAME).evaluateAttributeExpressions(flowFile).getValue();
         logger.debug("FetchAzureDataLakeStoreFile started for " + filename);
 
@@ -123,9 +272,40 @@ public class FetchAzureDataLakeStoreFile extends AbstractProcessor {
 
         try {
             final AzureDataLakeStoreFileSystemServiceInterface adlsService = context.getProperty(ADLS_CLIENT_SERVICE).asControllerService(AzureDataLakeStoreFileSystemServiceInterface.class);
-            final InputStream in = adlsService.getFile(filename);
+            final ContentDigest digest = ContentDigest.create(context.getProperty(CHECKSUM_ALGORITHM).getValue());
+            try (final InputStream in = adlsService.getFile(filename)) {
+                flowFile = session.write(flowFile, new OutputStreamCallback() {
+                    @Override
+                    public void process(final OutputStream out) throws IOException {
+                        // Copy through a pooled buffer rather than allocating one per FlowFile
+                        final byte[] buffer = adlsService.borrowBuffer();
+                        try {
+                            int length;
+                            while ((length = in.read(buffer)) != -1) {
+                                out.write(buffer, 0, length);
+                                if (digest != null) {
+                                    digest.update(buffer, 0, length);
+                                }
+                            }
+                        } finally {
+                            adlsService.returnBuffer(buffer);
+                        }
+                    }
+                });
+            }
 
-            flowFile = session.importFrom(in, flowFile);
+            if (digest != null) {
+                final String checksum = digest.getValue();
+                flowFile = session.putAttribute(flowFile, ContentDigest.CHECKSUM_ALGORITHM_ATTRIBUTE, context.getProperty(CHECKSUM_ALGORITHM).getValue());
+                flowFile = session.putAttribute(flowFile, ContentDigest.CHECKSUM_ATTRIBUTE, checksum);
+                final String expected = context.getProperty(EXPECTED_CHECKSUM).evaluateAttributeExpressions(flowFile).getValue();
+                if (expected != null && !ContentDigest.matches(expected, checksum)) {
+                    logger.error("Checksum of {} fetched from {} is {} but {} was expected; transferring to failure",
+                            new Object[]{flowFile, filename, checksum, expected});
+                    session.transfer(session.penalize(flowFile), REL_FAILURE);
+                    return;
+                }
+            }
 
             stopWatch.stop();
             final String dataRate = stopWatch.calculateDataRate(flowFile.getSize());
@@ -143,6 +323,8 @@ public class FetchAzureDataLakeStoreFile extends AbstractProcessor {
             logger.info("Successfully added {} to flow {} from on Azure Data Lake Store in {} milliseconds at a rate of {}",
                     new Object[]{new Object[]{flowFile}, filename, millis, dataRate});
 
+            complete(context, adlsService, flowFile, filename);
+
         } catch (IllegalArgumentException ex) {
             //exception thrown from invalid parameters
             logger.error("Illegal argument exception in FetchAzureDataLakeStoreFile", ex);
@@ -155,4 +337,147 @@ public class FetchAzureDataLakeStoreFile extends AbstractProcessor {
         }
 
     }
+
+    /**
+     * Accepts the first FlowFile that is either small or large with a large-lane permit available, taking the permit.
+     */
+    private static class SizeLaneFilter implements FlowFileFilter {
+
+        private final long largeFileThreshold;
+        private final Semaphore largeFetches;
+        private boolean holdsLargePermit;
+
+        private SizeLaneFilter(final long largeFileThreshold, final Semaphore largeFetches) {
+            this.largeFileThreshold = largeFileThreshold;
+            this.largeFetches = largeFetches;
+        }
+
+        @Override
+        public FlowFileFilterResult filter(final FlowFile flowFile) {
+            if (!isLarge(flowFile)) {
+                return FlowFileFilterResult.ACCEPT_AND_TERMINATE;
+            }
+            if (largeFetches.tryAcquire()) {
+                holdsLargePermit = true;
+                return FlowFileFilterResult.ACCEPT_AND_TERMINATE;
+            }
+            return FlowFileFilterResult.REJECT_AND_CONTINUE;
+        }
+
+        private boolean isLarge(final FlowFile flowFile) {
+            final String length = flowFile.getAttribute(ListAzureDataLakeStore.FILE_LENGTH_ATTRIBUTE);
+            if (length == null) {
+                return false;
+            }
+            try {
+                return Long.parseLong(length.trim()) >= largeFileThreshold;
+            } catch (final NumberFormatException e) {
+                return false;
+            }
+        }
+
+        boolean holdsLargePermit() {
+            return holdsLargePermit;
+        }
+    }
+
+    /**
+     * Starts the configured delete or move of a file that was fetched and committed, without waiting for it.
+     */
+    private void complete(final ProcessContext context, final AzureDataLakeStoreFileSystemServiceInterface adlsService, final FlowFile flowFile,
+            final String filename) {
+        final String strategy = context.getProperty(COMPLETION_STRATEGY).getValue();
+        if (!COMPLETION_DELETE.equals(strategy) && !COMPLETION_MOVE.equals(strategy)) {
+            return;
+        }
+
+        String destination = null;
+        if (COMPLETION_MOVE.equals(strategy)) {
+            String directory = context.getProperty(MOVE_DESTINATION_DIRECTORY).evaluateAttributeExpressions(flowFile).getValue();
+            if (!directory.endsWith("/")) {
+                directory = directory + "/";
+            }
+            destination = directory + filename.substring(filename.lastIndexOf('/') + 1);
+        }
+        final String description = destination == null ? "delete " + filename : "move " + filename + " to " + destination;
+
+        // Wait while too many are outstanding, so fetching cannot get arbitrarily far ahead of the deletes and moves
+        pendingCompletions.started(MAX_PENDING_COMPLETIONS);
+        try {
+            if (destination == null) {
+                adlsService.deleteFileAsync(filename, new CompletionCallback(description));
+            } else {
+                adlsService.renameFileAsync(filename, destination, new CompletionCallback(description));
+            }
+        } catch (final RuntimeException e) {
+            // Not started, e.g. because the service is being disabled, so the callback will never run
+            pendingCompletions.finished();
+            getLogger().warn("Failed to {} after fetching it due to {}", new Object[]{description, e});
+        }
+    }
+
+    private class CompletionCallback implements AzureDataLakeStoreCallback<Void> {
+
+        private final String description;
+
+        private CompletionCallback(final String description) {
+            this.description = description;
+        }
+
+        @Override
+        public void onSuccess(final Void result) {
+            pendingCompletions.finished();
+        }
+
+        @Override
+        public void onFailure(final Throwable failure) {
+            pendingCompletions.finished();
+            getLogger().warn("Failed to {} after fetching it due to {}", new Object[]{description, failure});
+        }
+    }
+
+    /**
+     * Counts the deletes and moves that have been started but not finished, so stopping can wait for them.
+     */
+    private static class PendingCompletions {
+
+        private int count;
+
+        /**
+         * Waits until fewer than the given number are outstanding, then counts one more.
+         */
+        synchronized void started(final int limit) {
+            try {
+                while (count >= limit) {
+                    wait();
+                }
+            } catch (final InterruptedException e) {
+                // Still start it; the file has been fetched and committed already
+                Thread.currentThread().interrupt();
+            }
+            count++;
+        }
+
+        synchronized void finished() {
+            count--;
+            notifyAll();
+        }
+
+        /**
+         * @return the number still outstanding after waiting
+         */
+        synchronized int awaitAll(final long timeoutMillis) {
+            final long deadline = System.currentTimeMillis() + timeoutMillis;
+            long remaining = timeoutMillis;
+            try {
+                while (count > 0 && remaining > 0) {
+                    wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return count;
+        }
+    }
 }
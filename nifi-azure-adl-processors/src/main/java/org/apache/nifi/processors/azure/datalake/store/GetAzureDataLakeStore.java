@@ -0,0 +1,596 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import org.apache.nifi.annotation.behavior.InputRequirement;
+import org.apache.nifi.annotation.behavior.Stateful;
+import org.apache.nifi.annotation.behavior.TriggerSerially;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.SeeAlso;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
+import org.apache.nifi.azure.datalake.store.AzureDataLakeStoreFileSystemServiceInterface;
+import org.apache.nifi.azure.datalake.store.RequestPriority;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.state.Scope;
+import org.apache.nifi.components.state.StateMap;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.processor.AbstractProcessor;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.ProcessorInitializationContext;
+import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.processor.exception.FlowFileAccessException;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.io.OutputStreamCallback;
+import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.processors.azure.datalake.store.model.FileStatusInfo;
+import org.apache.nifi.stream.io.StreamUtils;
+
+@TriggerSerially
+@InputRequirement(InputRequirement.Requirement.INPUT_FORBIDDEN)
+@Tags({"Azure", "Data Lake Store", "get", "fetch", "list", "ingest", "source", "input", "files"})
+@CapabilityDescription("Lists a directory on Azure Data Lake Store and fetches the content of every new file in the same step, emitting one "
+        + "FlowFile per file with the same attributes as ListAzureDataLakeStore. Files are fetched concurrently while the directory tree is "
+        + "still being listed. Only files modified after the newest file fetched by an earlier run, or at the same time but not fetched yet, "
+        + "are fetched. If a fetch fails, the file is tried again on the next run, and so may files that were modified after it")
+@SeeAlso({ListAzureDataLakeStore.class, FetchAzureDataLakeStoreFile.class})
+@WritesAttributes({
+    @WritesAttribute(attribute = "filename", description = "The name of the file on Azure Data Lake Store"),
+    @WritesAttribute(attribute = "path", description = "The directory of the file on Azure Data Lake Store"),
+    @WritesAttribute(attribute = "absolute.path", description = "The directory of the file on Azure Data Lake Store"),
+    @WritesAttribute(attribute = "file.owner", description = "The owner of the file"),
+    @WritesAttribute(attribute = "file.group", description = "The group of the file"),
+    @WritesAttribute(attribute = "file.lastModifiedTime", description = "The time the file was last modified"),
+    @WritesAttribute(attribute = "file.lastAccessTime", description = "The time the file was last accessed"),
+    @WritesAttribute(attribute = "file.blockSize", description = "The block size of the file"),
+    @WritesAttribute(attribute = "file.length", description = "The length of the file")})
+@Stateful(scopes = {Scope.CLUSTER}, description = "After fetching files, the modification time of the newest file fetched is stored, along "
+        + "with the paths of the files fetched that have that modification time, as ListAzureDataLakeStore does. This allows the Processor to "
+        + "fetch only files that have been added or modified after this date the next time that the Processor is run. State is stored across "
+        + "the cluster so that this Processor can be run on Primary Node only")
+public class GetAzureDataLakeStore extends AbstractProcessor {
+
+    static final String LISTING_TIMESTAMP_KEY = "listing.timestamp";
+    static final String IDENTIFIER_PREFIX = "id.";
+
+    public static final PropertyDescriptor ADLS_CLIENT_SERVICE = new PropertyDescriptor.Builder()
+            .name("Azure Data Lake Store File System Service")
+            .description("Specifies the Controller Service to use for accessing Azure Data Lake Store.")
+            .required(true)
+            .identifiesControllerService(AzureDataLakeStoreFileSystemServiceInterface.class)
+            .build();
+
+    public static final PropertyDescriptor DIRECTORY = new PropertyDescriptor.Builder()
+            .name("Input Directory")
+            .description("The input directory from which to get files")
+            .required(true)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .expressionLanguageSupported(true)
+            .build();
+
+    public static final PropertyDescriptor RECURSE = new PropertyDescriptor.Builder()
+            .name("Recurse Subdirectories")
+            .description("Indicates whether to get files from subdirectories of the directory")
+            .required(true)
+            .allowableValues("true", "false")
+            .defaultValue("true")
+            .build();
+
+    public static final PropertyDescriptor FILE_FILTER = new PropertyDescriptor.Builder()
+            .name("File Filter")
+            .description("Only files whose names match the given regular expression will be picked up")
+            .required(true)
+            .defaultValue("[^\\.].*")
+            .addValidator(StandardValidators.REGULAR_EXPRESSION_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MIN_FILE_AGE = new PropertyDescriptor.Builder()
+            .name("Minimum File Age")
+            .description("Files modified more recently than this are left for a later run, since they may still be being written")
+            .required(true)
+            .defaultValue("0 sec")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MAX_CONCURRENT_FETCHES = new PropertyDescriptor.Builder()
+            .name("Max Concurrent Fetches")
+            .description("The most files that are being fetched, or fetched and waiting to be written to the content repository, at once. "
+                    + "Listing pauses when this many are outstanding")
+            .required(true)
+            .defaultValue("8")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor IN_MEMORY_THRESHOLD = new PropertyDescriptor.Builder()
+            .name("In-Memory Threshold")
+            .description("Files up to this size are downloaded completely in the background and then written to the content repository at "
+                    + "once, in buffers borrowed from the Azure Data Lake Store service. Larger files, and files that do not fit in one of "
+                    + "its buffers, are streamed straight into the content repository, one at a time")
+            .required(true)
+            .defaultValue("1 MB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor REQUEST_PRIORITY = new PropertyDescriptor.Builder()
+            .name("Request Priority")
+            .description("The priority class of this processor's requests when the Azure Data Lake Store service's bandwidth or request rate "
+                    + "limit is reached. HIGH, NORMAL and LOW get shares of the limit in a ratio of 4:2:1")
+            .required(true)
+            .allowableValues(RequestPriority.HIGH.name(), RequestPriority.NORMAL.name(), RequestPriority.LOW.name())
+            .defaultValue(RequestPriority.NORMAL.name())
+            .build();
+
+    static final Relationship REL_SUCCESS = new Relationship.Builder()
+            .name("SUCCESS")
+            .description("All files that are fetched are routed to success")
+            .build();
+
+    private static final long RESULT_POLL_MILLIS = 100;
+
+    private List<PropertyDescriptor> descriptors;
+    private Set<Relationship> relationships;
+    private volatile ExecutorService fetchExecutor;
+    private volatile boolean resetState;
+
+    @Override
+    protected void init(final ProcessorInitializationContext context) {
+        final List<PropertyDescriptor> props = new ArrayList<>();
+        props.add(ADLS_CLIENT_SERVICE);
+        props.add(DIRECTORY);
+        props.add(RECURSE);
+        props.add(FILE_FILTER);
+        props.add(MIN_FILE_AGE);
+        props.add(MAX_CONCURRENT_FETCHES);
+        props.add(IN_MEMORY_THRESHOLD);
+        props.add(REQUEST_PRIORITY);
+        this.descriptors = Collections.unmodifiableList(props);
+
+        final Set<Relationship> relations = new HashSet<>();
+        relations.add(REL_SUCCESS);
+        this.relationships = Collections.unmodifiableSet(relations);
+    }
+
+    @Override
+    public Set<Relationship> getRelationships() {
+        return this.relationships;
+    }
+
+    @Override
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
+    }
+
+    @Override
+    public void onPropertyModified(final PropertyDescriptor descriptor, final String oldValue, final String newValue) {
+        // A different listing makes the stored timestamp meaningless, as for ListAzureDataLakeStore
+        if (oldValue != null && !oldValue.equals(newValue) && (DIRECTORY.equals(descriptor) || RECURSE.equals(descriptor) || FILE_FILTER.equals(descriptor))) {
+            resetState = true;
+        }
+    }
+
+    @OnScheduled
+    public void onScheduled(final ProcessContext context) throws IOException {
+        if (resetState) {
+            context.getStateManager().clear(Scope.CLUSTER);
+            resetState = false;
+        }
+
+        // One thread walks the directory tree, the others open and download files
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.fetchExecutor = Executors.newFixedThreadPool(context.getProperty(MAX_CONCURRENT_FETCHES).asInteger() + 1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "GetAzureDataLakeStore " + getIdentifier() + " " + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @OnStopped
+    public void onStopped() {
+        if (this.fetchExecutor != null) {
+            this.fetchExecutor.shutdownNow();
+            this.fetchExecutor = null;
+        }
+    }
+
+    @Override
+    public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
+
+        final ComponentLog logger = this.getLogger();
+        final StateMap state;
+        try {
+            state = context.getStateManager().getState(Scope.CLUSTER);
+        } catch (final IOException ex) {
+            logger.error("Failed to retrieve the timestamp of the last fetched file; will try again later", ex);
+            context.yield();
+            return;
+        }
+        final String storedTimestamp = state.get(LISTING_TIMESTAMP_KEY);
+        final long lastTimestamp = storedTimestamp == null ? -1L : Long.parseLong(storedTimestamp);
+        // Files modified in the same millisecond as the newest file fetched may have arrived after it was fetched
+        final Set<String> fetchedAtLastTimestamp = new HashSet<>();
+        for (final Map.Entry<String, String> entry : state.toMap().entrySet()) {
+            if (entry.getKey().startsWith(IDENTIFIER_PREFIX)) {
+                fetchedAtLastTimestamp.add(entry.getValue());
+            }
+        }
+
+        final RequestPriority priority = RequestPriority.valueOf(context.getProperty(REQUEST_PRIORITY).getValue());
+        final AzureDataLakeStoreFileSystemServiceInterface adlsService = context.getProperty(ADLS_CLIENT_SERVICE).asControllerService(AzureDataLakeStoreFileSystemServiceInterface.class);
+        final String directory = context.getProperty(DIRECTORY).evaluateAttributeExpressions().getValue();
+        final Pattern fileFilter = Pattern.compile(context.getProperty(FILE_FILTER).getValue());
+        final boolean recurse = context.getProperty(RECURSE).asBoolean();
+        final long inMemoryThreshold = context.getProperty(IN_MEMORY_THRESHOLD).asDataSize(DataUnit.B).longValue();
+        final long settledBefore = System.currentTimeMillis() - context.getProperty(MIN_FILE_AGE).asTimePeriod(TimeUnit.MILLISECONDS);
+
+        final ExecutorService executor = this.fetchExecutor;
+        final FetchResults results = new FetchResults(logger);
+        final Semaphore outstanding = new Semaphore(context.getProperty(MAX_CONCURRENT_FETCHES).asInteger());
+        final List<Future<?>> fetches = Collections.synchronizedList(new ArrayList<Future<?>>());
+
+        final Future<?> walk = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                RequestPriority.setCurrent(priority);
+                try {
+                    DirectoryWalker.walk(adlsService, directory, fileFilter, recurse, new DirectoryWalker.Visitor() {
+                        @Override
+                        public void visit(final FileStatusInfo file) throws IOException {
+                            final long modified = file.getModificationTime();
+                            if (modified < lastTimestamp || modified > settledBefore
+                                    || (modified == lastTimestamp && fetchedAtLastTimestamp.contains(pathOf(file)))) {
+                                return;
+                            }
+                            try {
+                                outstanding.acquire();
+                            } catch (final InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new InterruptedIOException("Interrupted while waiting to fetch " + file.getFileName());
+                            }
+                            fetches.add(executor.submit(new FetchTask(adlsService, file, inMemoryThreshold, priority, results)));
+                        }
+                    });
+                } finally {
+                    RequestPriority.clearCurrent();
+                }
+                return null;
+            }
+        });
+
+        // Turn fetched files into FlowFiles as they arrive; only this thread may use the session
+        final List<FileStatusInfo> fetchedFiles = new ArrayList<>();
+        long earliestFailure = Long.MAX_VALUE;
+        int received = 0;
+        boolean finished = false;
+        try {
+            while (!walk.isDone() || received < fetches.size()) {
+                if (walk.isDone()) {
+                    // Stop at once if the walk failed rather than waiting for the fetches already started
+                    walk.get();
+                }
+                final Fetched fetched = results.poll(RESULT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (fetched == null) {
+                    continue;
+                }
+                received++;
+                outstanding.release();
+                if (transfer(session, fetched)) {
+                    fetchedFiles.add(fetched.file);
+                } else {
+                    earliestFailure = Math.min(earliestFailure, fetched.file.getModificationTime());
+                }
+            }
+            walk.get();
+            finished = true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            session.rollback();
+            return;
+        } catch (final ExecutionException e) {
+            // Files not listed yet may be older than those fetched, so the timestamp cannot advance; fetch everything again next time
+            logger.error("Failed to list {}; will try again later", new Object[]{directory}, e.getCause());
+            session.rollback();
+            context.yield();
+            return;
+        } finally {
+            // Whatever stopped the loop early, including the session failing to write a file, nothing may keep downloading
+            if (!finished) {
+                abort(walk, fetches, results);
+            }
+        }
+
+        if (fetchedFiles.isEmpty()) {
+            context.yield();
+            return;
+        }
+
+        // Never advance past a file that failed, so it is fetched again
+        long newTimestamp = lastTimestamp;
+        for (final FileStatusInfo file : fetchedFiles) {
+            if (file.getModificationTime() < earliestFailure) {
+                newTimestamp = Math.max(newTimestamp, file.getModificationTime());
+            }
+        }
+        final Set<String> fetchedAtNewTimestamp = new HashSet<>();
+        if (newTimestamp == lastTimestamp) {
+            fetchedAtNewTimestamp.addAll(fetchedAtLastTimestamp);
+        }
+        for (final FileStatusInfo file : fetchedFiles) {
+            if (file.getModificationTime() == newTimestamp) {
+                fetchedAtNewTimestamp.add(pathOf(file));
+            }
+        }
+
+        // Commit before recording the timestamp: a crash in between fetches files twice rather than losing them
+        session.commit();
+        if (newTimestamp != lastTimestamp || fetchedAtNewTimestamp.size() != fetchedAtLastTimestamp.size()) {
+            final Map<String, String> newState = new HashMap<>();
+            newState.put(LISTING_TIMESTAMP_KEY, String.valueOf(newTimestamp));
+            int index = 0;
+            for (final String path : fetchedAtNewTimestamp) {
+                newState.put(IDENTIFIER_PREFIX + index++, path);
+            }
+            try {
+                context.getStateManager().setState(newState, Scope.CLUSTER);
+            } catch (final IOException ex) {
+                logger.warn("Failed to store the timestamp of the last fetched file; the {} files fetched may be fetched again",
+                        new Object[]{fetchedFiles.size()}, ex);
+            }
+        }
+    }
+
+    private static String pathOf(final FileStatusInfo file) {
+        return DirectoryWalker.combinePath(file.getAbsolutePath(), file.getFileName());
+    }
+
+    /**
+     * Stops the walk and the fetches it started, and closes every download that is or will be delivered.
+     */
+    private static void abort(final Future<?> walk, final List<Future<?>> fetches, final FetchResults results) {
+        walk.cancel(true);
+        synchronized (fetches) {
+            for (final Future<?> fetch : fetches) {
+                fetch.cancel(true);
+            }
+        }
+        results.abort();
+    }
+
+    /**
+     * @return true if the file was transferred as a FlowFile, false if fetching it failed
+     */
+    private boolean transfer(final ProcessSession session, final Fetched fetched) {
+        final String path = pathOf(fetched.file);
+        if (fetched.failure != null) {
+            getLogger().error("Failed to fetch {} due to {}; will try again on the next run", new Object[]{path, fetched.failure});
+            return false;
+        }
+
+        FlowFile flowFile = session.create();
+        flowFile = session.putAllAttributes(flowFile, ListAzureDataLakeStore.createFileAttributes(fetched.file));
+        try {
+            if (fetched.content != null) {
+                flowFile = session.write(flowFile, new OutputStreamCallback() {
+                    @Override
+                    public void process(final OutputStream out) throws IOException {
+                        out.write(fetched.content, 0, fetched.contentLength);
+                    }
+                });
+            } else {
+                flowFile = session.importFrom(fetched.stream, flowFile);
+            }
+        } catch (final IOException | FlowFileAccessException ex) {
+            getLogger().error("Failed to fetch {} due to {}; will try again on the next run", new Object[]{path, ex});
+            session.remove(flowFile);
+            return false;
+        } finally {
+            fetched.release(getLogger());
+        }
+
+        session.getProvenanceReporter().receive(flowFile, path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - fetched.startNanos));
+        session.transfer(flowFile, REL_SUCCESS);
+        return true;
+    }
+
+    /**
+     * Hands fetched files to the session thread. Once aborted, every file delivered, before or after, is closed instead.
+     */
+    private static class FetchResults {
+
+        private final BlockingQueue<Fetched> queue = new LinkedBlockingQueue<>();
+        private final ComponentLog logger;
+        private volatile boolean aborted;
+
+        private FetchResults(final ComponentLog logger) {
+            this.logger = logger;
+        }
+
+        void add(final Fetched fetched) {
+            queue.add(fetched);
+            // Checked after adding, so a file delivered while aborting is closed by one side or the other
+            if (aborted) {
+                discardQueued();
+            }
+        }
+
+        Fetched poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+            return queue.poll(timeout, unit);
+        }
+
+        void abort() {
+            aborted = true;
+            discardQueued();
+        }
+
+        private void discardQueued() {
+            Fetched fetched;
+            while ((fetched = queue.poll()) != null) {
+                fetched.release(logger);
+            }
+        }
+    }
+
+    /**
+     * Opens a file and, if it is small enough to fit in a pooled buffer, downloads all of it. Always delivers exactly one result.
+     */
+    private static class FetchTask implements Runnable {
+
+        private final AzureDataLakeStoreFileSystemServiceInterface adlsService;
+        private final FileStatusInfo file;
+        private final long inMemoryThreshold;
+        private final RequestPriority priority;
+        private final FetchResults results;
+
+        private FetchTask(final AzureDataLakeStoreFileSystemServiceInterface adlsService, final FileStatusInfo file, final long inMemoryThreshold,
+                final RequestPriority priority, final FetchResults results) {
+            this.adlsService = adlsService;
+            this.file = file;
+            this.inMemoryThreshold = inMemoryThreshold;
+            this.priority = priority;
+            this.results = results;
+        }
+
+        @Override
+        public void run() {
+            RequestPriority.setCurrent(priority);
+            try {
+                fetch();
+            } finally {
+                RequestPriority.clearCurrent();
+            }
+        }
+
+        private void fetch() {
+            final long startNanos = System.nanoTime();
+            final String path = pathOf(file);
+            Fetched fetched;
+            InputStream in = null;
+            try {
+                in = adlsService.getFile(path);
+                fetched = file.getLength() <= inMemoryThreshold ? download(in, startNanos) : null;
+                if (fetched == null) {
+                    fetched = new Fetched(adlsService, file, startNanos, null, 0, in, null);
+                }
+            } catch (final Exception e) {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (final IOException closeFailure) {
+                        e.addSuppressed(closeFailure);
+                    }
+                }
+                fetched = new Fetched(adlsService, file, startNanos, null, 0, null, e);
+            }
+            results.add(fetched);
+        }
+
+        /**
+         * @return the whole file in a pooled buffer, which the result returns to the pool once released, or null if the file
+         * does not fit in a buffer and has to be streamed instead
+         */
+        private Fetched download(final InputStream in, final long startNanos) throws IOException {
+            final byte[] buffer = adlsService.borrowBuffer();
+            boolean downloaded = false;
+            try {
+                if (file.getLength() > buffer.length) {
+                    return null;
+                }
+                final int length = StreamUtils.fillBuffer(in, buffer, false);
+                if (length == buffer.length && in.read() != -1) {
+                    throw new IOException("File " + file.getFileName() + " grew while it was being fetched");
+                }
+                in.close();
+                downloaded = true;
+                return new Fetched(adlsService, file, startNanos, buffer, length, null, null);
+            } finally {
+                // The caller closes the download if this fails
+                if (!downloaded) {
+                    adlsService.returnBuffer(buffer);
+                }
+            }
+        }
+    }
+
+    private static class Fetched {
+
+        private final AzureDataLakeStoreFileSystemServiceInterface adlsService;
+        private final FileStatusInfo file;
+        private final long startNanos;
+        private final byte[] content;
+        private final int contentLength;
+        private final InputStream stream;
+        private final Exception failure;
+
+        private Fetched(final AzureDataLakeStoreFileSystemServiceInterface adlsService, final FileStatusInfo file, final long startNanos,
+                final byte[] content, final int contentLength, final InputStream stream, final Exception failure) {
+            this.adlsService = adlsService;
+            this.file = file;
+            this.startNanos = startNanos;
+            this.content = content;
+            this.contentLength = contentLength;
+            this.stream = stream;
+            this.failure = failure;
+        }
+
+        /**
+         * Returns the buffer to the pool or closes the download; called exactly once, whether or not the file was transferred.
+         */
+        void release(final ComponentLog logger) {
+            if (content != null) {
+                adlsService.returnBuffer(content);
+            }
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (final IOException e) {
+                    logger.debug("Failed to close download of {}", new Object[]{file.getFileName()}, e);
+                }
+            }
+        }
+    }
+}
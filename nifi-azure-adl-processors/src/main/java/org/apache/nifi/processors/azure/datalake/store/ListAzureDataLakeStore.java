@@ -5,9 +5,6 @@
  */
 package org.apache.nifi.processors.azure.datalake.store;
 
-import com.microsoft.azure.CloudException;
-import com.microsoft.azure.management.datalake.store.models.FileStatusProperties;
-import com.microsoft.azure.management.datalake.store.models.FileType;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.text.DateFormat;
@@ -43,6 +40,7 @@ import org.apache.nifi.annotation.lifecycle.OnScheduled;
 import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.processor.util.StandardValidators;
 import org.apache.nifi.azure.datalake.store.AzureDataLakeStoreFileSystemServiceInterface;
+import org.apache.nifi.azure.datalake.store.RequestPriority;
 
 @TriggerSerially
 @InputRequirement(Requirement.INPUT_FORBIDDEN)
@@ -97,6 +95,15 @@ public class ListAzureDataLakeStore extends AbstractListProcessor<FileStatusInfo
             .addValidator(StandardValidators.REGULAR_EXPRESSION_VALIDATOR)
             .build();
 
+    public static final PropertyDescriptor REQUEST_PRIORITY = new PropertyDescriptor.Builder()
+            .name("Request Priority")
+            .description("The priority class of this processor's requests when the Azure Data Lake Store service's bandwidth or request rate "
+                    + "limit is reached. HIGH, NORMAL and LOW get shares of the limit in a ratio of 4:2:1")
+            .required(true)
+            .allowableValues(RequestPriority.HIGH.name(), RequestPriority.NORMAL.name(), RequestPriority.LOW.name())
+            .defaultValue(RequestPriority.NORMAL.name())
+            .build();
+
     private final AtomicReference<Pattern> fileFilterRef = new AtomicReference<>();
 
     public static final String FILE_LAST_MODIFY_TIME_ATTRIBUTE = "file.lastModifiedTime";
@@ -114,6 +121,7 @@ public class ListAzureDataLakeStore extends AbstractListProcessor<FileStatusInfo
         prop.add(DIRECTORY);
         prop.add(RECURSE);
         prop.add(FILE_FILTER);
+        prop.add(REQUEST_PRIORITY);
         this.properties = Collections.unmodifiableList(prop);
 
         final Set<Relationship> rel = new HashSet<>();
@@ -139,6 +147,13 @@ public class ListAzureDataLakeStore extends AbstractListProcessor<FileStatusInfo
 
     @Override
     protected Map<String, String> createAttributes(final FileStatusInfo fileStatusInfo, final ProcessContext context) {
+        return createFileAttributes(fileStatusInfo);
+    }
+
+    /**
+     * @return the attributes describing a listed file, shared with processors that list and fetch in one step
+     */
+    static Map<String, String> createFileAttributes(final FileStatusInfo fileStatusInfo) {
 
         final DateFormat formatter = new SimpleDateFormat(FILE_MODIFY_DATE_ATTR_FORMAT, Locale.US);
 
@@ -164,11 +179,27 @@ public class ListAzureDataLakeStore extends AbstractListProcessor<FileStatusInfo
     @Override
     protected List<FileStatusInfo> performListing(ProcessContext context, final Long minTimestamp) throws IOException {
 
+        RequestPriority.setCurrent(RequestPriority.valueOf(context.getProperty(REQUEST_PRIORITY).getValue()));
+        try {
+            return listFiles(context);
+        } finally {
+            RequestPriority.clearCurrent();
+        }
+    }
+
+    private List<FileStatusInfo> listFiles(final ProcessContext context) throws IOException {
         final String directory = getPath(context);
 
         final Boolean recurse = context.getProperty(RECURSE).asBoolean();
         final AzureDataLakeStoreFileSystemServiceInterface adlsService = context.getProperty(ADLS_CLIENT_SERVICE).asControllerService(AzureDataLakeStoreFileSystemServiceInterface.class);
-        return scanDirectory(adlsService, directory, directory, fileFilterRef.get(), recurse);
+        final List<FileStatusInfo> listing = new ArrayList<>();
+        DirectoryWalker.walk(adlsService, directory, fileFilterRef.get(), recurse, new DirectoryWalker.Visitor() {
+            @Override
+            public void visit(final FileStatusInfo file) {
+                listing.add(file);
+            }
+        });
+        return listing;
     }
 
     @Override
@@ -182,55 +213,4 @@ public class ListAzureDataLakeStore extends AbstractListProcessor<FileStatusInfo
     protected Scope getStateScope(final ProcessContext context) {
         return Scope.CLUSTER;
     }
-
-    private List<FileStatusInfo> scanDirectory(final AzureDataLakeStoreFileSystemServiceInterface fsService, final String initialDirectory, final String directory, final Pattern fileFilter, final Boolean recurse) throws IOException {
-        final List<FileStatusInfo> listing = new ArrayList<>();
-
-        try {
-            List<FileStatusProperties> fileStatus = fsService.listFileStatus(directory);
-
-            if (fileStatus != null) {
-                for (FileStatusProperties file : fileStatus) {
-                    if (file.getType() == FileType.DIRECTORY) {
-                        if (recurse) {
-                            listing.addAll(scanDirectory(fsService, initialDirectory, combinePath(directory, file.getPathSuffix()), fileFilter, true));
-                        }
-                    } else if (fileFilter.matcher(file.getPathSuffix()).matches()) {
-
-                        String relativePath;
-                        if (initialDirectory.equals(directory)) {
-                            relativePath = "./";
-                        } else {
-                            relativePath = directory.replace(initialDirectory, "");
-                        }
-
-                        listing.add(new FileStatusInfo.Builder().fileName(file.getPathSuffix())
-                                .absolutePath(directory)
-                                .relativePath(relativePath)
-                                .modificationTime(file.getModificationTime())
-                                .accessTime(file.getAccessTime())
-                                .blockSize(file.getBlockSize())
-                                .childrenNum(file.getChildrenNum())
-                                .group(file.getGroup())
-                                .owner(file.getOwner())
-                                .length(file.getLength())
-                                .permission(file.getPermission())
-                                .build());
-                    }
-                }
-            }
-        } catch (final CloudException e) {
-            throw new IOException("Failed to obtain file listing for " + directory, e);
-        }
-
-        return listing;
-    }
-
-    private static String combinePath(final String first, final String second) {
-        if (first.endsWith("/")) {
-            return first + second;
-        } else {
-            return first + "/" + second;
-        }
-    }
 }
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store;
+
+import com.microsoft.azure.CloudException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.nifi.annotation.behavior.InputRequirement;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.SeeAlso;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.azure.datalake.store.AzureDataLakeStoreFileSystemServiceInterface;
+import org.apache.nifi.azure.datalake.store.RequestPriority;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.processor.AbstractProcessor;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.ProcessorInitializationContext;
+import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.util.StandardValidators;
+
+@Tags({"Azure", "Data Lake Store", "move", "rename", "files"})
+@CapabilityDescription("Moves or renames a file on Azure Data Lake Store. The move is done by the server and only changes metadata; "
+        + "the content of the file is not transferred, so it takes the same time regardless of the size of the file. The FlowFile's "
+        + "content is not used. Up to Batch Size files are moved concurrently per invocation")
+@SeeAlso({ListAzureDataLakeStore.class, FetchAzureDataLakeStoreFile.class, PutAzureDataLakeStoreFile.class})
+@InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
+@WritesAttributes({
+    @WritesAttribute(attribute = "filename", description = "The filename is set to the name of the file after the move"),
+    @WritesAttribute(attribute = "path", description = "The path is set to the directory the file was moved to"),
+    @WritesAttribute(attribute = "absolute.path", description = "The absolute.path is set to the directory the file was moved to")})
+public class MoveAzureDataLakeStoreFile extends AbstractProcessor {
+
+    public static final PropertyDescriptor ADLS_CLIENT_SERVICE = new PropertyDescriptor.Builder()
+            .name("Azure Data Lake Store Client Service")
+            .description("Specifies the Controller Service to use for accessing Azure Data Lake Store.")
+            .required(true)
+            .identifiesControllerService(AzureDataLakeStoreFileSystemServiceInterface.class)
+            .build();
+
+    public static final PropertyDescriptor SOURCE_FILE = new PropertyDescriptor.Builder()
+            .name("File to Move")
+            .description("The fully-qualified filename of the file to move")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .defaultValue("${absolute.path}/${filename}")
+            .required(true)
+            .expressionLanguageSupported(true)
+            .build();
+
+    public static final PropertyDescriptor DESTINATION_DIRECTORY = new PropertyDescriptor.Builder()
+            .name("Destination Directory")
+            .description("The directory to move the file to. It is created if it does not exist. When the service stripes across several "
+                    + "accounts, a move that changes the file's account copies the content and deletes the original")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .required(true)
+            .expressionLanguageSupported(true)
+            .build();
+
+    public static final PropertyDescriptor DESTINATION_FILENAME = new PropertyDescriptor.Builder()
+            .name("Destination Filename")
+            .description("The name of the file after the move")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .defaultValue("${filename}")
+            .required(true)
+            .expressionLanguageSupported(true)
+            .build();
+
+    public static final PropertyDescriptor BATCH_SIZE = new PropertyDescriptor.Builder()
+            .name("Batch Size")
+            .description("The maximum number of FlowFiles whose files are moved concurrently in one invocation")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .defaultValue("100")
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor REQUEST_PRIORITY = new PropertyDescriptor.Builder()
+            .name("Request Priority")
+            .description("The priority class of this processor's requests when the Azure Data Lake Store service's bandwidth or request rate "
+                    + "limit is reached. HIGH, NORMAL and LOW get shares of the limit in a ratio of 4:2:1")
+            .required(true)
+            .allowableValues(RequestPriority.HIGH.name(), RequestPriority.NORMAL.name(), RequestPriority.LOW.name())
+            .defaultValue(RequestPriority.NORMAL.name())
+            .build();
+
+    static final Relationship REL_SUCCESS = new Relationship.Builder()
+            .name("SUCCESS")
+            .description("FlowFiles whose file was moved are routed to success")
+            .build();
+
+    static final Relationship REL_FAILURE = new Relationship.Builder()
+            .name("FAILURE")
+            .description("FlowFiles whose file could not be moved are routed to failure")
+            .build();
+
+    private List<PropertyDescriptor> descriptors;
+    private Set<Relationship> relationships;
+
+    @Override
+    protected void init(final ProcessorInitializationContext context) {
+        final List<PropertyDescriptor> props = new ArrayList<>();
+        props.add(ADLS_CLIENT_SERVICE);
+        props.add(SOURCE_FILE);
+        props.add(DESTINATION_DIRECTORY);
+        props.add(DESTINATION_FILENAME);
+        props.add(BATCH_SIZE);
+        props.add(REQUEST_PRIORITY);
+        this.descriptors = Collections.unmodifiableList(props);
+
+        final Set<Relationship> relations = new HashSet<>();
+        relations.add(REL_SUCCESS);
+        relations.add(REL_FAILURE);
+        this.relationships = Collections.unmodifiableSet(relations);
+    }
+
+    @Override
+    public Set<Relationship> getRelationships() {
+        return this.relationships;
+    }
+
+    @Override
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
+    }
+
+    @Override
+    public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
+
+        final List<FlowFile> flowFiles = session.get(context.getProperty(BATCH_SIZE).asInteger());
+        if (flowFiles.isEmpty()) {
+            return;
+        }
+
+        RequestPriority.setCurrent(RequestPriority.valueOf(context.getProperty(REQUEST_PRIORITY).getValue()));
+        try {
+            move(context, session, flowFiles);
+        } finally {
+            RequestPriority.clearCurrent();
+        }
+    }
+
+    private void move(final ProcessContext context, final ProcessSession session, final List<FlowFile> flowFiles) {
+        final ComponentLog logger = this.getLogger();
+
+        final AzureDataLakeStoreFileSystemServiceInterface adlsService = context.getProperty(ADLS_CLIENT_SERVICE).asControllerService(AzureDataLakeStoreFileSystemServiceInterface.class);
+        final long startNanos = System.nanoTime();
+
+        // Start every move before waiting for any, so the whole batch is in flight at once
+        final List<Move> moves = new ArrayList<>(flowFiles.size());
+        for (final FlowFile flowFile : flowFiles) {
+            final String source = context.getProperty(SOURCE_FILE).evaluateAttributeExpressions(flowFile).getValue();
+            String directory = context.getProperty(DESTINATION_DIRECTORY).evaluateAttributeExpressions(flowFile).getValue();
+            if (directory.length() > 1 && directory.endsWith("/")) {
+                directory = directory.substring(0, directory.length() - 1);
+            }
+            final String filename = context.getProperty(DESTINATION_FILENAME).evaluateAttributeExpressions(flowFile).getValue();
+            final String destination = directory.endsWith("/") ? directory + filename : directory + "/" + filename;
+            moves.add(new Move(flowFile, source, directory, filename, adlsService.renameFileAsync(source, destination, null)));
+        }
+
+        for (final Move move : moves) {
+            FlowFile flowFile = move.flowFile;
+            try {
+                AdlsFutures.await(move.result);
+            } catch (final IllegalArgumentException | IOException | CloudException ex) {
+                logger.error("Failed to move {} to {}/{}; penalizing {} and transferring to failure due to {}",
+                        new Object[]{move.source, move.directory, move.filename, flowFile, ex});
+                session.transfer(session.penalize(flowFile), REL_FAILURE);
+                continue;
+            }
+
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put(CoreAttributes.FILENAME.key(), move.filename);
+            attributes.put(CoreAttributes.PATH.key(), move.directory);
+            attributes.put(CoreAttributes.ABSOLUTE_PATH.key(), move.directory);
+            flowFile = session.putAllAttributes(flowFile, attributes);
+
+            // The content is unchanged and stays in Data Lake Store; only the attributes that locate it change
+            session.getProvenanceReporter().modifyAttributes(flowFile);
+            session.transfer(flowFile, REL_SUCCESS);
+        }
+
+        logger.debug("Moved a batch of {} files on Azure Data Lake Store in {} milliseconds",
+                new Object[]{moves.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)});
+    }
+
+    private static class Move {
+
+        private final FlowFile flowFile;
+        private final String source;
+        private final String directory;
+        private final String filename;
+        private final Future<Void> result;
+
+        private Move(final FlowFile flowFile, final String source, final String directory, final String filename, final Future<Void> result) {
+            this.flowFile = flowFile;
+            this.source = source;
+            this.directory = directory;
+            this.filename = filename;
+            this.result = result;
+        }
+    }
+}
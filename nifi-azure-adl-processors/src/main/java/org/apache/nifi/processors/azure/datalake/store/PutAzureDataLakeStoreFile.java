@@ -33,21 +33,26 @@ import org.apache.nifi.processor.util.StandardValidators;
 
 import java.util.*;
 import java.util.concurrent.TimeUnit;
-import org.apache.commons.io.IOUtils;
 import org.apache.nifi.annotation.behavior.InputRequirement;
 import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.logging.ComponentLog;
 import org.apache.nifi.util.StopWatch;
 import org.apache.nifi.azure.datalake.store.AzureDataLakeStoreFileSystemServiceInterface;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.azure.datalake.store.RequestPriority;
 import org.apache.nifi.processor.exception.FlowFileAccessException;
 import org.apache.nifi.processor.io.InputStreamCallback;
+import org.apache.nifi.stream.io.StreamUtils;
 
 @Tags({"Azure", "Data Lake Store", "get", "files"})
 @CapabilityDescription("Fetches the content of a file from from Azure Data Lake Store and and overwrites the contents of an incoming FlowFile with the content of the Data Lake Store file")
 @SeeAlso({ListAzureDataLakeStore.class, FetchAzureDataLakeStoreFile.class})
 @InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
 @WritesAttributes({
-    @WritesAttribute(attribute = "filename", description = "The filename is set to the name of the file on Azure Data Lake")})
+    @WritesAttribute(attribute = "filename", description = "The filename is set to the name of the file on Azure Data Lake"),
+    @WritesAttribute(attribute = "checksum", description = "The checksum of the content, in lowercase hexadecimal, if a Checksum Algorithm is set"),
+    @WritesAttribute(attribute = "checksum.algorithm", description = "The algorithm of the checksum attribute")})
 public class PutAzureDataLakeStoreFile extends AbstractProcessor {
 
     public static final PropertyDescriptor ADLS_CLIENT_SERVICE = new PropertyDescriptor.Builder()
@@ -65,6 +70,33 @@ public class PutAzureDataLakeStoreFile extends AbstractProcessor {
             .expressionLanguageSupported(true)
             .build();
 
+    public static final PropertyDescriptor CHECKSUM_ALGORITHM = new PropertyDescriptor.Builder()
+            .name("Checksum Algorithm")
+            .description("The checksum computed over the content as it is uploaded. It is written to the checksum and "
+                    + "checksum.algorithm attributes")
+            .required(true)
+            .allowableValues(ContentDigest.NONE, ContentDigest.CRC32C, ContentDigest.MD5, ContentDigest.SHA_256)
+            .defaultValue(ContentDigest.NONE)
+            .build();
+
+    public static final PropertyDescriptor EXPECTED_CHECKSUM = new PropertyDescriptor.Builder()
+            .name("Expected Checksum")
+            .description("The checksum, in hexadecimal, that the content must have, e.g. ${source.md5}. If the computed checksum differs, the uploaded file is deleted and "
+                    + "the FlowFile is routed to failure. Requires a Checksum Algorithm")
+            .required(false)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .expressionLanguageSupported(true)
+            .build();
+
+    public static final PropertyDescriptor REQUEST_PRIORITY = new PropertyDescriptor.Builder()
+            .name("Request Priority")
+            .description("The priority class of this processor's requests when the Azure Data Lake Store service's bandwidth or request rate "
+                    + "limit is reached. HIGH, NORMAL and LOW get shares of the limit in a ratio of 4:2:1")
+            .required(true)
+            .allowableValues(RequestPriority.HIGH.name(), RequestPriority.NORMAL.name(), RequestPriority.LOW.name())
+            .defaultValue(RequestPriority.NORMAL.name())
+            .build();
+
     /*public static final PropertyDescriptor CONFLICT_RESOLUTION = new PropertyDescriptor.Builder()
             .name("Conflict Resolution Strategy")
             .description("Indicates what should happen when a file with the same name already exists in the output directory")
@@ -90,6 +122,9 @@ public class PutAzureDataLakeStoreFile extends AbstractProcessor {
         final List<PropertyDescriptor> props = new ArrayList<>();
         props.add(ADLS_CLIENT_SERVICE);
         props.add(DIRECTORY);
+        props.add(CHECKSUM_ALGORITHM);
+        props.add(EXPECTED_CHECKSUM);
+        props.add(REQUEST_PRIORITY);
         this.descriptors = Collections.unmodifiableList(props);
 
         final Set<Relationship> relations = new HashSet<>();
@@ -108,6 +143,16 @@ public class PutAzureDataLakeStoreFile extends AbstractProcessor {
         return descriptors;
     }
 
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        final List<ValidationResult> results = new ArrayList<>();
+        if (context.getProperty(EXPECTED_CHECKSUM).isSet() && ContentDigest.NONE.equals(context.getProperty(CHECKSUM_ALGORITHM).getValue())) {
+            results.add(new ValidationResult.Builder().subject(EXPECTED_CHECKSUM.getName()).valid(false)
+                    .explanation("an Expected Checksum can only be verified with a Checksum Algorithm").build());
+        }
+        return results;
+    }
+
     @OnScheduled
     public void onScheduled(final ProcessContext context) {
 
@@ -116,12 +161,22 @@ public class PutAzureDataLakeStoreFile extends AbstractProcessor {
     @Override
     public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
 
-        final ComponentLog logger = this.getLogger();
         FlowFile flowFile = session.get();
         if (flowFile == null) {
             return;
         }
 
+        RequestPriority.setCurrent(RequestPriority.valueOf(context.getProperty(REQUEST_PRIORITY).getValue()));
+        try {
+            put(context, session, flowFile);
+        } finally {
+            RequestPriority.clearCurrent();
+        }
+    }
+
+    private void put(final ProcessContext context, final ProcessSession session, FlowFile flowFile) {
+        final ComponentLog logger = this.getLogger();
+
         final StopWatch stopWatch = new StopWatch(true);
         String configuredRootDirPath = context.getProperty(DIRECTORY).evaluateAttributeExpressions(flowFile).getValue();
         final String fileName = flowFile.getAttribute(CoreAttributes.FILENAME.key());
@@ -137,21 +192,49 @@ public class PutAzureDataLakeStoreFile extends AbstractProcessor {
         try {
             final AzureDataLakeStoreFileSystemServiceInterface adlsService = context.getProperty(ADLS_CLIENT_SERVICE).asControllerService(AzureDataLakeStoreFileSystemServiceInterface.class);
 
+            final ContentDigest digest = ContentDigest.create(context.getProperty(CHECKSUM_ALGORITHM).getValue());
+
             //This will create an empty file. Then we will read the incoming data and append it to this file.
             adlsService.createFile(outFileName);
             session.read(flowFile, new InputStreamCallback() {
                 @Override
                 public void process(InputStream inputStream) throws IOException {
-                    byte[] bytes = IOUtils.toByteArray(inputStream);
+                    // Upload one pooled buffer at a time, so nothing the size of the whole FlowFile is allocated
+                    final byte[] buffer = adlsService.borrowBuffer();
                     try {
-                        adlsService.appendToFile(outFileName, bytes);
+                        int length;
+                        while ((length = StreamUtils.fillBuffer(inputStream, buffer, false)) > 0) {
+                            // The SDK only appends whole arrays, so a partly filled last buffer has to be copied
+                            final byte[] contents = length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+                            adlsService.appendToFile(outFileName, contents);
+                            if (digest != null) {
+                                digest.update(buffer, 0, length);
+                            }
+                        }
                     } catch (CloudException ex) {
                         logger.error(null, ex);
                         throw new IOException("Error in writing to " + outFileName, ex);
+                    } finally {
+                        adlsService.returnBuffer(buffer);
                     }
                 }
             });
 
+            if (digest != null) {
+                final String checksum = digest.getValue();
+                flowFile = session.putAttribute(flowFile, ContentDigest.CHECKSUM_ALGORITHM_ATTRIBUTE, context.getProperty(CHECKSUM_ALGORITHM).getValue());
+                flowFile = session.putAttribute(flowFile, ContentDigest.CHECKSUM_ATTRIBUTE, checksum);
+                final String expected = context.getProperty(EXPECTED_CHECKSUM).evaluateAttributeExpressions(flowFile).getValue();
+                if (expected != null && !ContentDigest.matches(expected, checksum)) {
+                    // Do not leave content that is known to be wrong on the lake
+                    adlsService.deleteFile(outFileName);
+                    logger.error("Checksum of {} is {} but {} was expected; deleted {} and transferring to failure",
+                            new Object[]{flowFile, checksum, expected, outFileName});
+                    session.transfer(session.penalize(flowFile), REL_FAILURE);
+                    return;
+                }
+            }
+
             stopWatch.stop();
             final String dataRate = stopWatch.calculateDataRate(flowFile.getSize());
             final long millis = stopWatch.getDuration(TimeUnit.MILLISECONDS);
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompactAzureDataLakeStoreDirectoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestRunner runner;
+    private File directory;
+
+    @Before
+    public void setUp() throws InitializationException {
+        runner = TestRunners.newTestRunner(CompactAzureDataLakeStoreDirectory.class);
+        LocalServiceTestSupport.addLocalService(runner, folder.getRoot());
+        runner.setProperty(CompactAzureDataLakeStoreDirectory.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        runner.setProperty(CompactAzureDataLakeStoreDirectory.DIRECTORY, "/events");
+        runner.setProperty(CompactAzureDataLakeStoreDirectory.MIN_FILE_AGE, "1 min");
+        directory = new File(folder.getRoot(), "local/events");
+    }
+
+    private File createFile(final String name, final String content, final long ageMillis) throws IOException {
+        final File file = new File(directory, name);
+        Files.createDirectories(directory.toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(System.currentTimeMillis() - ageMillis));
+        return file;
+    }
+
+    @Test
+    public void testFullBatchesAreMergedOldestFirst() throws IOException {
+        final long old = TimeUnit.HOURS.toMillis(1);
+        createFile("a.csv", "1111\n", old + 3000);
+        createFile("b.csv", "2222\n", old + 2000);
+        createFile("c.csv", "3333\n", old + 1000);
+        final File recent = createFile("d.csv", "4444\n", 0);
+        runner.setProperty(CompactAzureDataLakeStoreDirectory.TARGET_SIZE, "10 B");
+
+        runner.run();
+
+        // a and b fill a batch; c waits for more files and d is too recent
+        runner.assertAllFlowFilesTransferred(CompactAzureDataLakeStoreDirectory.REL_SUCCESS, 1);
+        final MockFlowFile flowFile = runner.getFlowFilesForRelationship(CompactAzureDataLakeStoreDirectory.REL_SUCCESS).get(0);
+        flowFile.assertAttributeEquals(CompactAzureDataLakeStoreDirectory.SOURCE_COUNT_ATTRIBUTE, "2");
+        flowFile.assertAttributeEquals(CoreAttributes.ABSOLUTE_PATH.key(), "/events");
+        final String merged = flowFile.getAttribute(CoreAttributes.FILENAME.key());
+        assertTrue(merged.startsWith("compacted-") && merged.endsWith(".csv"));
+
+        assertEquals("1111\n2222\n", new String(Files.readAllBytes(new File(directory, merged).toPath()), StandardCharsets.UTF_8));
+        assertFalse(new File(directory, "a.csv").exists());
+        assertFalse(new File(directory, "b.csv").exists());
+        assertTrue(new File(directory, "c.csv").exists());
+        assertTrue(recent.exists());
+
+        // The merged file is not merged again, and c still has nothing to merge with
+        runner.clearTransferState();
+        runner.run();
+        runner.assertTransferCount(CompactAzureDataLakeStoreDirectory.REL_SUCCESS, 0);
+    }
+
+    @Test
+    public void testUnfilledBatchIsMergedOnceOverdue() throws IOException {
+        createFile("a.csv", "1\n", TimeUnit.MINUTES.toMillis(30));
+        createFile("b.csv", "2\n", TimeUnit.MINUTES.toMillis(20));
+        runner.setProperty(CompactAzureDataLakeStoreDirectory.TARGET_SIZE, "1 KB");
+
+        // The files are far from the Target Size and not old enough to be merged anyway
+        runner.run();
+        runner.assertTransferCount(CompactAzureDataLakeStoreDirectory.REL_SUCCESS, 0);
+
+        runner.setProperty(CompactAzureDataLakeStoreDirectory.MAX_BATCH_AGE, "25 mins");
+        runner.run();
+        runner.assertAllFlowFilesTransferred(CompactAzureDataLakeStoreDirectory.REL_SUCCESS, 1);
+        runner.getFlowFilesForRelationship(CompactAzureDataLakeStoreDirectory.REL_SUCCESS).get(0)
+                .assertAttributeEquals(CompactAzureDataLakeStoreDirectory.SOURCE_COUNT_ATTRIBUTE, "2");
+        assertEquals(1, directory.list().length);
+    }
+
+    @Test
+    public void testEndedTimeWindowsAreMergedSeparately() throws IOException {
+        final long window = TimeUnit.HOURS.toMillis(1);
+        final long start = (System.currentTimeMillis() / window - 3) * window;
+        createFile("a.csv", "a\n", System.currentTimeMillis() - start - 1000);
+        createFile("b.csv", "b\n", System.currentTimeMillis() - start - 2000);
+        createFile("c.csv", "c\n", System.currentTimeMillis() - start - window - 1000);
+        createFile("d.csv", "d\n", System.currentTimeMillis() - start - window - 2000);
+        runner.setProperty(CompactAzureDataLakeStoreDirectory.GROUPING_STRATEGY, CompactAzureDataLakeStoreDirectory.GROUP_BY_TIME_WINDOW);
+        runner.setProperty(CompactAzureDataLakeStoreDirectory.TIME_WINDOW, "1 hour");
+
+        runner.run();
+
+        runner.assertAllFlowFilesTransferred(CompactAzureDataLakeStoreDirectory.REL_SUCCESS, 2);
+        final String[] remaining = directory.list();
+        assertEquals(2, remaining.length);
+    }
+}
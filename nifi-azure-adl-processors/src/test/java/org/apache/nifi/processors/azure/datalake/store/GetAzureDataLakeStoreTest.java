@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.apache.nifi.components.state.Scope;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GetAzureDataLakeStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestRunner runner;
+
+    @Before
+    public void setUp() throws InitializationException {
+        runner = TestRunners.newTestRunner(GetAzureDataLakeStore.class);
+        LocalServiceTestSupport.addLocalService(runner, folder.getRoot());
+        runner.setProperty(GetAzureDataLakeStore.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        runner.setProperty(GetAzureDataLakeStore.DIRECTORY, "/incoming");
+        runner.setProperty(GetAzureDataLakeStore.IN_MEMORY_THRESHOLD, "4 B");
+    }
+
+    private void createFile(final String path, final String content, final long lastModified) throws IOException {
+        final File file = new File(folder.getRoot(), "local" + path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(lastModified);
+    }
+
+    @Test
+    public void testFetchesOnlyNewFiles() throws IOException {
+        final long now = System.currentTimeMillis();
+        createFile("/incoming/a.txt", "abc", now - 60000);
+        createFile("/incoming/nested/b.txt", "larger than the threshold", now - 50000);
+        createFile("/incoming/.hidden", "skipped", now - 50000);
+
+        runner.run();
+
+        runner.assertAllFlowFilesTransferred(GetAzureDataLakeStore.REL_SUCCESS, 2);
+        final List<MockFlowFile> flowFiles = runner.getFlowFilesForRelationship(GetAzureDataLakeStore.REL_SUCCESS);
+        for (final MockFlowFile flowFile : flowFiles) {
+            if ("a.txt".equals(flowFile.getAttribute(CoreAttributes.FILENAME.key()))) {
+                flowFile.assertContentEquals("abc");
+                flowFile.assertAttributeEquals(CoreAttributes.PATH.key(), "/incoming");
+            } else {
+                flowFile.assertContentEquals("larger than the threshold");
+                flowFile.assertAttributeEquals(CoreAttributes.PATH.key(), "/incoming/nested");
+            }
+        }
+        runner.getStateManager().assertStateSet(GetAzureDataLakeStore.LISTING_TIMESTAMP_KEY, Scope.CLUSTER);
+
+        runner.clearTransferState();
+        runner.run();
+        runner.assertTransferCount(GetAzureDataLakeStore.REL_SUCCESS, 0);
+
+        createFile("/incoming/c.txt", "new", now - 40000);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(GetAzureDataLakeStore.REL_SUCCESS, 1);
+        runner.getFlowFilesForRelationship(GetAzureDataLakeStore.REL_SUCCESS).get(0).assertContentEquals("new");
+    }
+
+    @Test
+    public void testFetchesLaterFileWithSameTimestamp() throws IOException {
+        // Whole seconds, so the timestamps are equal even on file systems with coarse modification times
+        final long modified = (System.currentTimeMillis() - 60000) / 1000 * 1000;
+        createFile("/incoming/a.txt", "abc", modified);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(GetAzureDataLakeStore.REL_SUCCESS, 1);
+
+        runner.clearTransferState();
+        createFile("/incoming/b.txt", "def", modified);
+        runner.run();
+        runner.assertAllFlowFilesTransferred(GetAzureDataLakeStore.REL_SUCCESS, 1);
+        runner.getFlowFilesForRelationship(GetAzureDataLakeStore.REL_SUCCESS).get(0).assertContentEquals("def");
+
+        runner.clearTransferState();
+        runner.run();
+        runner.assertTransferCount(GetAzureDataLakeStore.REL_SUCCESS, 0);
+    }
+
+    @Test
+    public void testChangingDirectoryResetsState() throws IOException {
+        createFile("/incoming/a.txt", "abc", System.currentTimeMillis() - 60000);
+        createFile("/other/a.txt", "abc", System.currentTimeMillis() - 60000);
+
+        runner.run();
+        runner.assertAllFlowFilesTransferred(GetAzureDataLakeStore.REL_SUCCESS, 1);
+
+        runner.clearTransferState();
+        runner.setProperty(GetAzureDataLakeStore.DIRECTORY, "/other");
+        runner.run();
+        runner.assertAllFlowFilesTransferred(GetAzureDataLakeStore.REL_SUCCESS, 1);
+    }
+}
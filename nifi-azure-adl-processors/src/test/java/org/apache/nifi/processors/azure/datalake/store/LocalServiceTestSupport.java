@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import org.apache.nifi.azure.datalake.store.LocalAzureDataLakeStoreFileSystemService;
+import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.util.TestRunner;
+
+/**
+ * Adds a local file system service to a test runner, so the processors can be
+ * tested against files in a temporary directory.
+ */
+final class LocalServiceTestSupport {
+
+    static final String SERVICE_ID = "adls";
+    static final String ACCOUNT = "local";
+
+    private LocalServiceTestSupport() {
+    }
+
+    static LocalAzureDataLakeStoreFileSystemService addLocalService(final TestRunner runner, final File root) throws InitializationException {
+        return addLocalService(runner, root, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * @param extraProperties additional properties of the local service, e.g. simulated errors
+     */
+    static LocalAzureDataLakeStoreFileSystemService addLocalService(final TestRunner runner, final File root, final Map<String, String> extraProperties)
+            throws InitializationException {
+        final LocalAzureDataLakeStoreFileSystemService service = new LocalAzureDataLakeStoreFileSystemService();
+        runner.addControllerService(SERVICE_ID, service);
+        runner.setProperty(service, LocalAzureDataLakeStoreFileSystemService.ROOT_DIRECTORY, root.getAbsolutePath());
+        runner.setProperty(service, LocalAzureDataLakeStoreFileSystemService.ACCOUNT_NAME, ACCOUNT);
+        for (final Map.Entry<String, String> property : extraProperties.entrySet()) {
+            runner.setProperty(service, property.getKey(), property.getValue());
+        }
+        runner.enableControllerService(service);
+        return service;
+    }
+}
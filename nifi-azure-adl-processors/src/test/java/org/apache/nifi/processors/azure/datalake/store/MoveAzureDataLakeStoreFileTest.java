@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.nifi.azure.datalake.store.LocalAzureDataLakeStoreFileSystemService;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.provenance.ProvenanceEventRecord;
+import org.apache.nifi.provenance.ProvenanceEventType;
+import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MoveAzureDataLakeStoreFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestRunner runner;
+
+    @Before
+    public void setUp() throws InitializationException {
+        runner = TestRunners.newTestRunner(MoveAzureDataLakeStoreFile.class);
+        LocalServiceTestSupport.addLocalService(runner, folder.getRoot());
+        runner.setProperty(MoveAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        runner.setProperty(MoveAzureDataLakeStoreFile.DESTINATION_DIRECTORY, "/archive/${filename:substringBefore('-')}");
+    }
+
+    private File createFile(final String path, final String content) throws IOException {
+        final File file = new File(folder.getRoot(), "local" + path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static Map<String, String> location(final String directory, final String name) {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put(CoreAttributes.ABSOLUTE_PATH.key(), directory);
+        attributes.put(CoreAttributes.FILENAME.key(), name);
+        return attributes;
+    }
+
+    @Test
+    public void testMoveBatchIntoNewDirectories() throws IOException {
+        final File first = createFile("/incoming/a-1.csv", "first");
+        final File second = createFile("/incoming/b-2.csv", "second");
+
+        runner.enqueue(new byte[0], location("/incoming", "a-1.csv"));
+        runner.enqueue(new byte[0], location("/incoming", "b-2.csv"));
+        runner.run();
+
+        runner.assertAllFlowFilesTransferred(MoveAzureDataLakeStoreFile.REL_SUCCESS, 2);
+        assertFalse(first.exists());
+        assertFalse(second.exists());
+        assertEquals("first", new String(Files.readAllBytes(new File(folder.getRoot(), "local/archive/a/a-1.csv").toPath()), StandardCharsets.UTF_8));
+        assertTrue(new File(folder.getRoot(), "local/archive/b/b-2.csv").isFile());
+
+        final MockFlowFile moved = runner.getFlowFilesForRelationship(MoveAzureDataLakeStoreFile.REL_SUCCESS).get(0);
+        moved.assertAttributeEquals(CoreAttributes.ABSOLUTE_PATH.key(), "/archive/a");
+        moved.assertAttributeEquals(CoreAttributes.FILENAME.key(), "a-1.csv");
+
+        assertEquals(2, runner.getProvenanceEvents().size());
+        for (final ProvenanceEventRecord event : runner.getProvenanceEvents()) {
+            assertEquals(ProvenanceEventType.ATTRIBUTES_MODIFIED, event.getEventType());
+        }
+    }
+
+    @Test
+    public void testMoveOntoExistingFileRoutesToFailure() throws IOException {
+        final File source = createFile("/incoming/a-1.csv", "new");
+        createFile("/archive/a/a-1.csv", "old");
+
+        runner.enqueue(new byte[0], location("/incoming", "a-1.csv"));
+        runner.enqueue(new byte[0], location("/incoming", "a-missing.csv"));
+        runner.run();
+
+        runner.assertAllFlowFilesTransferred(MoveAzureDataLakeStoreFile.REL_FAILURE, 2);
+        assertTrue(source.isFile());
+    }
+
+    @Test
+    public void testMoveAcrossStripedAccounts() throws InitializationException, IOException {
+        final TestRunner stripedRunner = TestRunners.newTestRunner(MoveAzureDataLakeStoreFile.class);
+        final LocalAzureDataLakeStoreFileSystemService service = LocalServiceTestSupport.addLocalService(stripedRunner, folder.getRoot(),
+                Collections.singletonMap(LocalAzureDataLakeStoreFileSystemService.ADDITIONAL_ACCOUNT_NAMES.getName(), "second"));
+        stripedRunner.setProperty(MoveAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        stripedRunner.setProperty(MoveAzureDataLakeStoreFile.DESTINATION_DIRECTORY, "/archive");
+
+        // One source directory per file, so that some of them are on a different account than the destination
+        for (int i = 0; i < 20; i++) {
+            final String name = "f-" + i + ".csv";
+            final String directory = "/incoming/" + i;
+            final File source = new File(folder.getRoot(), service.getAccountName(directory + "/" + name) + directory + "/" + name);
+            Files.createDirectories(source.getParentFile().toPath());
+            Files.write(source.toPath(), name.getBytes(StandardCharsets.UTF_8));
+            stripedRunner.enqueue(new byte[0], location(directory, name));
+        }
+        stripedRunner.run();
+
+        stripedRunner.assertAllFlowFilesTransferred(MoveAzureDataLakeStoreFile.REL_SUCCESS, 20);
+        for (int i = 0; i < 20; i++) {
+            final String name = "f-" + i + ".csv";
+            final String directory = "/incoming/" + i;
+            assertFalse(new File(folder.getRoot(), service.getAccountName(directory + "/" + name) + directory + "/" + name).exists());
+            final File moved = new File(folder.getRoot(), service.getAccountName("/archive/" + name) + "/archive/" + name);
+            assertEquals(name, new String(Files.readAllBytes(moved.toPath()), StandardCharsets.UTF_8));
+        }
+    }
+}
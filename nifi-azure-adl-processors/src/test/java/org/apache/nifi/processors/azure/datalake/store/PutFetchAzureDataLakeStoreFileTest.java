@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.processors.azure.datalake.store;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.nifi.azure.datalake.store.LocalAzureDataLakeStoreFileSystemService;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.reporting.InitializationException;
+import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PutFetchAzureDataLakeStoreFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Map<String, String> filename(final String name) {
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put(CoreAttributes.FILENAME.key(), name);
+        return attributes;
+    }
+
+    @Test
+    public void testPutThenFetch() throws InitializationException, IOException {
+        final TestRunner putRunner = TestRunners.newTestRunner(PutAzureDataLakeStoreFile.class);
+        LocalServiceTestSupport.addLocalService(putRunner, folder.getRoot());
+        putRunner.setProperty(PutAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        putRunner.setProperty(PutAzureDataLakeStoreFile.DIRECTORY, "/incoming");
+
+        putRunner.enqueue("hello data lake".getBytes(StandardCharsets.UTF_8), filename("greeting.txt"));
+        putRunner.run();
+
+        putRunner.assertAllFlowFilesTransferred(PutAzureDataLakeStoreFile.REL_SUCCESS, 1);
+        final File stored = new File(folder.getRoot(), "local/incoming/greeting.txt");
+        assertEquals("hello data lake", new String(Files.readAllBytes(stored.toPath()), StandardCharsets.UTF_8));
+
+        final TestRunner fetchRunner = TestRunners.newTestRunner(FetchAzureDataLakeStoreFile.class);
+        LocalServiceTestSupport.addLocalService(fetchRunner, folder.getRoot());
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.FILENAME, "/incoming/greeting.txt");
+
+        fetchRunner.enqueue(new byte[0], filename("greeting.txt"));
+        fetchRunner.run();
+
+        fetchRunner.assertAllFlowFilesTransferred(FetchAzureDataLakeStoreFile.REL_SUCCESS, 1);
+        fetchRunner.getFlowFilesForRelationship(FetchAzureDataLakeStoreFile.REL_SUCCESS).get(0).assertContentEquals("hello data lake");
+    }
+
+    @Test
+    public void testFetchMissingFileRoutesToFailure() throws InitializationException {
+        final TestRunner fetchRunner = TestRunners.newTestRunner(FetchAzureDataLakeStoreFile.class);
+        LocalServiceTestSupport.addLocalService(fetchRunner, folder.getRoot());
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.FILENAME, "/incoming/missing.txt");
+
+        fetchRunner.enqueue(new byte[0], filename("missing.txt"));
+        fetchRunner.run();
+
+        fetchRunner.assertAllFlowFilesTransferred(FetchAzureDataLakeStoreFile.REL_FAILURE, 1);
+    }
+
+    @Test
+    public void testFetchThenMoveOrDelete() throws InitializationException, IOException {
+        final File moved = new File(folder.getRoot(), "local/incoming/moved.txt");
+        final File deleted = new File(folder.getRoot(), "local/incoming/deleted.txt");
+        Files.createDirectories(moved.getParentFile().toPath());
+        Files.write(moved.toPath(), "move me".getBytes(StandardCharsets.UTF_8));
+        Files.write(deleted.toPath(), "delete me".getBytes(StandardCharsets.UTF_8));
+
+        final TestRunner fetchRunner = TestRunners.newTestRunner(FetchAzureDataLakeStoreFile.class);
+        LocalServiceTestSupport.addLocalService(fetchRunner, folder.getRoot());
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.FILENAME, "/incoming/${filename}");
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.COMPLETION_STRATEGY, FetchAzureDataLakeStoreFile.COMPLETION_MOVE);
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.MOVE_DESTINATION_DIRECTORY, "/processed");
+
+        // Stopping the processor after the run waits for the move
+        fetchRunner.enqueue(new byte[0], filename("moved.txt"));
+        fetchRunner.run();
+
+        fetchRunner.assertAllFlowFilesTransferred(FetchAzureDataLakeStoreFile.REL_SUCCESS, 1);
+        fetchRunner.getFlowFilesForRelationship(FetchAzureDataLakeStoreFile.REL_SUCCESS).get(0).assertContentEquals("move me");
+        assertFalse(moved.exists());
+        assertTrue(new File(folder.getRoot(), "local/processed/moved.txt").isFile());
+
+        fetchRunner.clearTransferState();
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.COMPLETION_STRATEGY, FetchAzureDataLakeStoreFile.COMPLETION_DELETE);
+        fetchRunner.enqueue(new byte[0], filename("deleted.txt"));
+        fetchRunner.run();
+
+        fetchRunner.assertAllFlowFilesTransferred(FetchAzureDataLakeStoreFile.REL_SUCCESS, 1);
+        fetchRunner.getFlowFilesForRelationship(FetchAzureDataLakeStoreFile.REL_SUCCESS).get(0).assertContentEquals("delete me");
+        assertFalse(deleted.exists());
+    }
+
+    @Test
+    public void testChecksumsAreComputedAndVerified() throws InitializationException {
+        final TestRunner putRunner = TestRunners.newTestRunner(PutAzureDataLakeStoreFile.class);
+        LocalServiceTestSupport.addLocalService(putRunner, folder.getRoot());
+        putRunner.setProperty(PutAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        putRunner.setProperty(PutAzureDataLakeStoreFile.DIRECTORY, "/checked");
+        putRunner.setProperty(PutAzureDataLakeStoreFile.CHECKSUM_ALGORITHM, ContentDigest.MD5);
+        putRunner.setProperty(PutAzureDataLakeStoreFile.EXPECTED_CHECKSUM, "${expected}");
+
+        final Map<String, String> good = filename("good.txt");
+        good.put("expected", "25F9E794323B453885F5181F1B624D0B");
+        final Map<String, String> bad = filename("bad.txt");
+        bad.put("expected", "00000000000000000000000000000000");
+        putRunner.enqueue("123456789".getBytes(StandardCharsets.UTF_8), good);
+        putRunner.enqueue("123456789".getBytes(StandardCharsets.UTF_8), bad);
+        putRunner.run(2);
+
+        putRunner.assertTransferCount(PutAzureDataLakeStoreFile.REL_SUCCESS, 1);
+        putRunner.assertTransferCount(PutAzureDataLakeStoreFile.REL_FAILURE, 1);
+        putRunner.getFlowFilesForRelationship(PutAzureDataLakeStoreFile.REL_SUCCESS).get(0)
+                .assertAttributeEquals(ContentDigest.CHECKSUM_ATTRIBUTE, "25f9e794323b453885f5181f1b624d0b");
+        assertTrue(new File(folder.getRoot(), "local/checked/good.txt").isFile());
+        assertFalse(new File(folder.getRoot(), "local/checked/bad.txt").exists());
+
+        final TestRunner fetchRunner = TestRunners.newTestRunner(FetchAzureDataLakeStoreFile.class);
+        LocalServiceTestSupport.addLocalService(fetchRunner, folder.getRoot());
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.FILENAME, "/checked/good.txt");
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.CHECKSUM_ALGORITHM, ContentDigest.CRC32C);
+
+        fetchRunner.enqueue(new byte[0], filename("good.txt"));
+        fetchRunner.run();
+
+        fetchRunner.assertAllFlowFilesTransferred(FetchAzureDataLakeStoreFile.REL_SUCCESS, 1);
+        final MockFlowFile fetched = fetchRunner.getFlowFilesForRelationship(FetchAzureDataLakeStoreFile.REL_SUCCESS).get(0);
+        fetched.assertAttributeEquals(ContentDigest.CHECKSUM_ALGORITHM_ATTRIBUTE, ContentDigest.CRC32C);
+        fetched.assertAttributeEquals(ContentDigest.CHECKSUM_ATTRIBUTE, "e3069283");
+    }
+
+    @Test
+    public void testTransientErrorsAreRetried() throws InitializationException {
+        final Map<String, String> flaky = new HashMap<>();
+        flaky.put(LocalAzureDataLakeStoreFileSystemService.SIMULATED_ERROR_PERCENTAGE.getName(), "30");
+        flaky.put(LocalAzureDataLakeStoreFileSystemService.MAX_RETRIES.getName(), "50");
+        flaky.put(LocalAzureDataLakeStoreFileSystemService.RETRY_INITIAL_BACKOFF.getName(), "1 millis");
+
+        final TestRunner putRunner = TestRunners.newTestRunner(PutAzureDataLakeStoreFile.class);
+        LocalServiceTestSupport.addLocalService(putRunner, folder.getRoot(), flaky);
+        putRunner.setProperty(PutAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        putRunner.setProperty(PutAzureDataLakeStoreFile.DIRECTORY, "/flaky");
+
+        for (int i = 0; i < 20; i++) {
+            putRunner.enqueue(("file " + i).getBytes(StandardCharsets.UTF_8), filename("file-" + i + ".txt"));
+        }
+        putRunner.run(20);
+
+        putRunner.assertAllFlowFilesTransferred(PutAzureDataLakeStoreFile.REL_SUCCESS, 20);
+    }
+
+    @Test
+    public void testLargeFetchesDoNotBlockSmallOnes() throws InitializationException, IOException {
+        final File directory = new File(folder.getRoot(), "local/incoming");
+        Files.createDirectories(directory.toPath());
+        Files.write(new File(directory, "large.bin").toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, "small.txt").toPath(), "hi".getBytes(StandardCharsets.UTF_8));
+
+        final TestRunner fetchRunner = TestRunners.newTestRunner(FetchAzureDataLakeStoreFile.class);
+        LocalServiceTestSupport.addLocalService(fetchRunner, folder.getRoot());
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.FILENAME, "/incoming/${filename}");
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.LARGE_FILE_THRESHOLD, "5 B");
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.MAX_CONCURRENT_LARGE_FETCHES, "1");
+
+        // Schedule the processor, then occupy the only large-lane permit as a concurrent large fetch would
+        fetchRunner.run(1, false, true);
+        final FetchAzureDataLakeStoreFile processor = (FetchAzureDataLakeStoreFile) fetchRunner.getProcessor();
+        assertTrue(processor.occupyLargeFetchLane());
+
+        final Map<String, String> large = filename("large.bin");
+        large.put(ListAzureDataLakeStore.FILE_LENGTH_ATTRIBUTE, "10");
+        final Map<String, String> small = filename("small.txt");
+        small.put(ListAzureDataLakeStore.FILE_LENGTH_ATTRIBUTE, "2");
+        fetchRunner.enqueue(new byte[0], large);
+        fetchRunner.enqueue(new byte[0], small);
+
+        fetchRunner.run(1, false, false);
+        fetchRunner.assertAllFlowFilesTransferred(FetchAzureDataLakeStoreFile.REL_SUCCESS, 1);
+        fetchRunner.getFlowFilesForRelationship(FetchAzureDataLakeStoreFile.REL_SUCCESS).get(0).assertContentEquals("hi");
+        assertEquals(1, fetchRunner.getQueueSize().getObjectCount());
+
+        processor.releaseLargeFetchLane();
+        fetchRunner.clearTransferState();
+        fetchRunner.run(1, true, false);
+        fetchRunner.assertAllFlowFilesTransferred(FetchAzureDataLakeStoreFile.REL_SUCCESS, 1);
+        fetchRunner.getFlowFilesForRelationship(FetchAzureDataLakeStoreFile.REL_SUCCESS).get(0).assertContentEquals("0123456789");
+        assertEquals(1, processor.getAvailableLargeFetches());
+    }
+
+    @Test
+    public void testSmallFileArrivingBehindWaitingLargeFileIsFetched() throws InitializationException, IOException {
+        final File directory = new File(folder.getRoot(), "local/incoming");
+        Files.createDirectories(directory.toPath());
+        Files.write(new File(directory, "large.bin").toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(directory, "small.txt").toPath(), "hi".getBytes(StandardCharsets.UTF_8));
+
+        final TestRunner fetchRunner = TestRunners.newTestRunner(FetchAzureDataLakeStoreFile.class);
+        LocalServiceTestSupport.addLocalService(fetchRunner, folder.getRoot());
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.ADLS_CLIENT_SERVICE, LocalServiceTestSupport.SERVICE_ID);
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.FILENAME, "/incoming/${filename}");
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.LARGE_FILE_THRESHOLD, "5 B");
+        fetchRunner.setProperty(FetchAzureDataLakeStoreFile.MAX_CONCURRENT_LARGE_FETCHES, "1");
+
+        fetchRunner.run(1, false, true);
+        final FetchAzureDataLakeStoreFile processor = (FetchAzureDataLakeStoreFile) fetchRunner.getProcessor();
+        assertTrue(processor.occupyLargeFetchLane());
+
+        // Only a large file is queued and the lane is full, so nothing can be fetched yet
+        final Map<String, String> large = filename("large.bin");
+        large.put(ListAzureDataLakeStore.FILE_LENGTH_ATTRIBUTE, "10");
+        fetchRunner.enqueue(new byte[0], large);
+        fetchRunner.run(1, false, false);
+        fetchRunner.assertTransferCount(FetchAzureDataLakeStoreFile.REL_SUCCESS, 0);
+        assertEquals(1, fetchRunner.getQueueSize().getObjectCount());
+
+        // A small file arriving afterwards is fetched on the very next trigger
+        final Map<String, String> small = filename("small.txt");
+        small.put(ListAzureDataLakeStore.FILE_LENGTH_ATTRIBUTE, "2");
+        fetchRunner.enqueue(new byte[0], small);
+        fetchRunner.run(1, false, false);
+        fetchRunner.assertAllFlowFilesTransferred(FetchAzureDataLakeStoreFile.REL_SUCCESS, 1);
+        fetchRunner.getFlowFilesForRelationship(FetchAzureDataLakeStoreFile.REL_SUCCESS).get(0).assertContentEquals("hi");
+        assertEquals(1, fetchRunner.getQueueSize().getObjectCount());
+
+        processor.releaseLargeFetchLane();
+        fetchRunner.run(1, true, false);
+        assertEquals(0, fetchRunner.getQueueSize().getObjectCount());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decides which Data Lake Store account holds a path when the service stripes
+ * across several accounts.
+ *
+ * A file is placed by its parent directory, so all files of a directory
+ * share an account and can be renamed or concatenated with each other on the
+ * server. A directory under one of the configured prefixes belongs to that
+ * prefix's account; the longest matching prefix wins. Any other directory is
+ * placed on a consistent hash ring, so partitioned layouts spread across the
+ * accounts one directory at a time. Adding an account to the ring only
+ * relocates the share of directories that the new account takes over.
+ *
+ * Directories themselves are not placed: one exists on every account that
+ * holds files below it.
+ */
+class AccountRouter {
+
+    private static final int VIRTUAL_NODES_PER_ACCOUNT = 128;
+
+    private final List<String> accounts;
+    private final Map<String, String> prefixRules;
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * @param accounts the accounts to stripe across, the first being the primary
+     * @param prefixRules account for each path prefix, in any order
+     */
+    AccountRouter(final List<String> accounts, final Map<String, String> prefixRules) {
+        this.accounts = Collections.unmodifiableList(new ArrayList<>(accounts));
+
+        // Longest prefixes first, so the first match is the most specific
+        final List<String> prefixes = new ArrayList<>(prefixRules.keySet());
+        Collections.sort(prefixes, new Comparator<String>() {
+            @Override
+            public int compare(final String a, final String b) {
+                return Integer.compare(b.length(), a.length());
+            }
+        });
+        final Map<String, String> ordered = new LinkedHashMap<>();
+        for (final String prefix : prefixes) {
+            ordered.put(prefix, prefixRules.get(prefix));
+        }
+        this.prefixRules = ordered;
+
+        for (final String account : accounts) {
+            for (int i = 0; i < VIRTUAL_NODES_PER_ACCOUNT; i++) {
+                ring.put(hash(account + "#" + i), account);
+            }
+        }
+    }
+
+    /**
+     * Parses rules of the form {@code /prefix=account,/other/prefix=account}.
+     *
+     * @throws IllegalArgumentException if a rule is malformed
+     */
+    static Map<String, String> parsePrefixRules(final String rules) {
+        final Map<String, String> parsed = new LinkedHashMap<>();
+        if (rules == null) {
+            return parsed;
+        }
+        for (final String rule : rules.split(",")) {
+            if (rule.trim().isEmpty()) {
+                continue;
+            }
+            final int separator = rule.indexOf('=');
+            if (separator <= 0 || separator == rule.length() - 1) {
+                throw new IllegalArgumentException("Expected <path prefix>=<account name> but found '" + rule.trim() + "'");
+            }
+            parsed.put(rule.substring(0, separator).trim(), rule.substring(separator + 1).trim());
+        }
+        return parsed;
+    }
+
+    boolean isStriped() {
+        return accounts.size() > 1;
+    }
+
+    List<String> getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * @return the account that stores the file at the given path, which is the account of its parent directory
+     */
+    String getAccount(final String path) {
+        final String directory = getParent(trimTrailingSlashes(path));
+        final String pinned = getPinnedAccount(directory);
+        if (pinned != null) {
+            return pinned;
+        }
+        if (!isStriped()) {
+            return accounts.get(0);
+        }
+
+        final Map.Entry<Long, String> node = ring.ceilingEntry(hash(directory));
+        return node == null ? ring.firstEntry().getValue() : node.getValue();
+    }
+
+    /**
+     * @return the accounts that may hold entries of the given directory: the
+     * account of a matching prefix rule, otherwise all of them
+     */
+    List<String> getAccountsForDirectory(final String directoryPath) {
+        final String pinned = getPinnedAccount(directoryPath);
+        return pinned == null ? accounts : Collections.singletonList(pinned);
+    }
+
+    private String getPinnedAccount(final String path) {
+        for (final Map.Entry<String, String> rule : prefixRules.entrySet()) {
+            final String prefix = rule.getKey();
+            if (path.equals(prefix) || path.startsWith(prefix.endsWith("/") ? prefix : prefix + "/")) {
+                return rule.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String getParent(final String path) {
+        final int lastSlash = path.lastIndexOf('/');
+        return lastSlash <= 0 ? "/" : path.substring(0, lastSlash);
+    }
+
+    private static String trimTrailingSlashes(final String path) {
+        String trimmed = path;
+        while (trimmed.length() > 1 && trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    private static long hash(final String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (digest[i] & 0xFF);
+            }
+            return value;
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
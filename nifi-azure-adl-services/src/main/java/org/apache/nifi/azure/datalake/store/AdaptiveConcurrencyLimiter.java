@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+/**
+ * Limits the number of requests in flight against an account using additive
+ * increase / multiplicative decrease. Every successful request raises the
+ * limit by 1/limit, so it grows by about one per round of requests. A
+ * throttled request halves it.
+ *
+ * Throttles reported by requests that were issued before the most recent
+ * decrease are ignored, so a single burst of rejections only halves the limit
+ * once.
+ */
+class AdaptiveConcurrencyLimiter {
+
+    private static final double DECREASE_FACTOR = 0.5;
+
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+
+    AdaptiveConcurrencyLimiter(final int initialLimit, final int maxLimit) {
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(1, Math.min(initialLimit, maxLimit));
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    /**
+     * Waits until a request may be issued.
+     *
+     * @return the time the permit was granted, to be passed back to {@link #release(long, boolean)}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized long acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+        return System.nanoTime();
+    }
+
+    synchronized void release(final long acquiredNanos, final boolean throttled) {
+        inFlight--;
+        if (throttled) {
+            if (acquiredNanos - lastDecreaseNanos > 0) {
+                limit = Math.max(1, limit * DECREASE_FACTOR);
+                lastDecreaseNanos = System.nanoTime();
+            }
+        } else if (limit < maxLimit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        notifyAll();
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+}
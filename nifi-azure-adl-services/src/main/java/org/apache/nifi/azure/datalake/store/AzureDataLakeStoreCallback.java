@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+/**
+ * Receives the outcome of an asynchronous Azure Data Lake Store request.
+ *
+ * Callbacks run on the service's I/O threads, or on the calling thread when
+ * the result is served from the metadata cache. They should return quickly
+ * and must not wait on other requests to the same service.
+ *
+ * @param <T> the result type of the request
+ */
+public interface AzureDataLakeStoreCallback<T> {
+
+    void onSuccess(T result);
+
+    /**
+     * @param failure a CloudException, IOException or runtime exception raised by the request
+     */
+    void onFailure(Throwable failure);
+}
@@ -6,21 +6,38 @@
 package org.apache.nifi.azure.datalake.store;
 
 import com.microsoft.azure.CloudException;
-import com.microsoft.azure.credentials.ApplicationTokenCredentials;
-import com.microsoft.azure.management.datalake.store.DataLakeStoreFileSystemManagementClient;
 import com.microsoft.azure.management.datalake.store.DataLakeStoreFileSystemManagementClientImpl;
 import com.microsoft.azure.management.datalake.store.models.FileStatusProperties;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.annotation.lifecycle.OnDisabled;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.controller.AbstractControllerService;
 import org.apache.nifi.controller.ConfigurationContext;
+import org.apache.nifi.processor.DataUnit;
 import org.apache.nifi.annotation.lifecycle.OnEnabled;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,19 +45,53 @@ import org.slf4j.LoggerFactory;
 @Tags({"Azure", "Data Lake Store", "shared", "connection", "service", "file"})
 @CapabilityDescription("A controller service for accessing Azure Data Lake Store File System")
 
-public class AzureDataLakeStoreFileSystemService extends AbstractControllerService implements AzureDataLakeStoreFileSystemServiceInterface {
+public class AzureDataLakeStoreFileSystemService extends AbstractControllerService implements AzureDataLakeStoreFileSystemServiceInterface,
+        AzureDataLakeStoreServiceMXBean {
 
     private static final Logger LOG = LoggerFactory.getLogger(AzureDataLakeStoreFileSystemService.class);
     private static final List<PropertyDescriptor> serviceProperties;
-    private volatile DataLakeStoreFileSystemManagementClient fileSystemClient;
-    private volatile String accountName;
+    private volatile DataLakeStoreFileSystem fileSystem;
+    private volatile AccountRouter accountRouter;
+    private volatile RefreshingApplicationTokenCredentials credentials;
+    private volatile ScheduledExecutorService scheduler;
+    private volatile long tokenRefreshIntervalMillis;
+    private volatile RetryPolicy retryPolicy;
+    private volatile Map<String, AdaptiveConcurrencyLimiter> concurrencyLimiters;
+    private volatile ExecutorService ioExecutor;
+    private volatile MetadataCache<List<FileStatusProperties>> listingCache;
+    private volatile MetadataCache<FileStatusProperties> statusCache;
+    private volatile TokenBucketGovernor bandwidthGovernor;
+    private volatile TokenBucketGovernor requestRateGovernor;
+    private volatile AzureDataLakeStoreMetrics metrics;
+    private volatile BufferPool bufferPool;
+
+    // How soon to try again after a background refresh fails. The cached token stays in use meanwhile.
+    private static final long TOKEN_REFRESH_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final long MAX_TRANSFER_BUFFER_SIZE = 1024L * 1024 * 1024;
 
     static {
         final List<PropertyDescriptor> props = new ArrayList<>();
         props.add(ACCOUNT_NAME);
+        props.add(ADDITIONAL_ACCOUNT_NAMES);
+        props.add(ACCOUNT_PREFIX_RULES);
         props.add(TENANT_ID);
         props.add(CLIENT_ID);
         props.add(CLIENT_SECRET);
+        props.add(TOKEN_REFRESH_INTERVAL);
+        props.add(MAX_RETRIES);
+        props.add(RETRY_INITIAL_BACKOFF);
+        props.add(RETRY_MAX_BACKOFF);
+        props.add(MAX_CONCURRENT_REQUESTS);
+        props.add(IO_THREADS);
+        props.add(METADATA_CACHE_TTL);
+        props.add(METADATA_CACHE_SIZE);
+        props.add(MAX_BYTES_PER_SECOND);
+        props.add(MAX_REQUESTS_PER_SECOND);
+        props.add(TRANSFER_BUFFER_SIZE);
+        props.add(TRANSFER_BUFFER_POOL_SIZE);
+        props.add(TRANSFER_BUFFER_WAIT_TIME);
+        props.add(METRICS_REPORTING_INTERVAL);
         serviceProperties = Collections.unmodifiableList(props);
     }
 
@@ -49,61 +100,1225 @@ public class AzureDataLakeStoreFileSystemService extends AbstractControllerServi
         return serviceProperties;
     }
 
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        final List<ValidationResult> results = new ArrayList<>();
+        final List<String> accounts = getAccountNames(context.getProperty(ACCOUNT_NAME).getValue(), context.getProperty(ADDITIONAL_ACCOUNT_NAMES).getValue());
+        try {
+            final Map<String, String> rules = AccountRouter.parsePrefixRules(context.getProperty(ACCOUNT_PREFIX_RULES).getValue());
+            for (final Map.Entry<String, String> rule : rules.entrySet()) {
+                if (!accounts.contains(rule.getValue())) {
+                    results.add(new ValidationResult.Builder().subject(ACCOUNT_PREFIX_RULES.getName()).input(rule.getKey() + "=" + rule.getValue()).valid(false)
+                            .explanation("account " + rule.getValue() + " is neither the Account Name nor one of the Additional Account Names").build());
+                }
+            }
+        } catch (final IllegalArgumentException e) {
+            results.add(new ValidationResult.Builder().subject(ACCOUNT_PREFIX_RULES.getName()).input(context.getProperty(ACCOUNT_PREFIX_RULES).getValue())
+                    .valid(false).explanation(e.getMessage()).build());
+        }
+
+        final Double bufferSize = context.getProperty(TRANSFER_BUFFER_SIZE).asDataSize(DataUnit.B);
+        if (bufferSize != null && (bufferSize < 1 || bufferSize > MAX_TRANSFER_BUFFER_SIZE)) {
+            results.add(new ValidationResult.Builder().subject(TRANSFER_BUFFER_SIZE.getName()).input(context.getProperty(TRANSFER_BUFFER_SIZE).getValue())
+                    .valid(false).explanation("must be between 1 B and 1 GB").build());
+        }
+        return results;
+    }
+
+    private static List<String> getAccountNames(final String accountName, final String additionalAccountNames) {
+        final List<String> accounts = new ArrayList<>();
+        accounts.add(accountName);
+        if (additionalAccountNames != null) {
+            for (final String account : additionalAccountNames.split(",")) {
+                if (!account.trim().isEmpty() && !accounts.contains(account.trim())) {
+                    accounts.add(account.trim());
+                }
+            }
+        }
+        return accounts;
+    }
+
     @OnEnabled
     public void onEnabled(final ConfigurationContext context) {
         LOG.info("Starting Azure Data Lake File System Client service");
 
-        ApplicationTokenCredentials creds = new ApplicationTokenCredentials(
-                context.getProperty(CLIENT_ID).getValue(),
-                context.getProperty(TENANT_ID).getValue(),
-                context.getProperty(CLIENT_SECRET).getValue(), null);
+        this.fileSystem = createFileSystem(context);
+        this.accountRouter = new AccountRouter(
+                getAccountNames(context.getProperty(ACCOUNT_NAME).getValue(), context.getProperty(ADDITIONAL_ACCOUNT_NAMES).getValue()),
+                AccountRouter.parsePrefixRules(context.getProperty(ACCOUNT_PREFIX_RULES).getValue()));
+
+        this.retryPolicy = new RetryPolicy(
+                context.getProperty(MAX_RETRIES).asInteger(),
+                context.getProperty(RETRY_INITIAL_BACKOFF).asTimePeriod(TimeUnit.MILLISECONDS),
+                context.getProperty(RETRY_MAX_BACKOFF).asTimePeriod(TimeUnit.MILLISECONDS));
+        final int maxConcurrentRequests = context.getProperty(MAX_CONCURRENT_REQUESTS).asInteger();
+        final Map<String, AdaptiveConcurrencyLimiter> limiters = new HashMap<>();
+        for (final String account : accountRouter.getAccounts()) {
+            limiters.put(account, new AdaptiveConcurrencyLimiter(Math.max(1, maxConcurrentRequests / 2), maxConcurrentRequests));
+        }
+        this.concurrencyLimiters = limiters;
+
+        final long cacheTtlMillis = context.getProperty(METADATA_CACHE_TTL).asTimePeriod(TimeUnit.MILLISECONDS);
+        if (cacheTtlMillis > 0) {
+            final int cacheSize = context.getProperty(METADATA_CACHE_SIZE).asInteger();
+            this.listingCache = new MetadataCache<>(cacheTtlMillis, cacheSize);
+            this.statusCache = new MetadataCache<>(cacheTtlMillis, cacheSize);
+        } else {
+            this.listingCache = null;
+            this.statusCache = null;
+        }
+
+        this.bandwidthGovernor = context.getProperty(MAX_BYTES_PER_SECOND).isSet()
+                ? new TokenBucketGovernor(context.getProperty(MAX_BYTES_PER_SECOND).asDataSize(DataUnit.B).longValue())
+                : null;
+        this.requestRateGovernor = context.getProperty(MAX_REQUESTS_PER_SECOND).isSet()
+                ? new TokenBucketGovernor(context.getProperty(MAX_REQUESTS_PER_SECOND).asInteger())
+                : null;
+
+        this.bufferPool = new BufferPool(
+                context.getProperty(TRANSFER_BUFFER_SIZE).asDataSize(DataUnit.B).intValue(),
+                context.getProperty(TRANSFER_BUFFER_POOL_SIZE).asInteger(),
+                context.getProperty(TRANSFER_BUFFER_WAIT_TIME).asTimePeriod(TimeUnit.MILLISECONDS));
 
-        this.fileSystemClient = new DataLakeStoreFileSystemManagementClientImpl(creds);
-        this.accountName = context.getProperty(ACCOUNT_NAME).getValue();
+        final AtomicInteger ioThreadCount = new AtomicInteger();
+        this.ioExecutor = Executors.newFixedThreadPool(context.getProperty(IO_THREADS).asInteger(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "ADLS I/O " + ioThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        this.metrics = new AzureDataLakeStoreMetrics();
+        this.metrics.register(getIdentifier(), this);
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "ADLS Service Scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if (this.credentials != null) {
+            // Acquire the first token right away so no request pays for it
+            scheduleTokenRefresh(0);
+        }
+
+        if (context.getProperty(METRICS_REPORTING_INTERVAL).isSet()) {
+            final long reportingIntervalMillis = context.getProperty(METRICS_REPORTING_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS);
+            final AzureDataLakeStoreMetrics reportedMetrics = this.metrics;
+            this.scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    final String report = reportedMetrics.report(reportingIntervalMillis);
+                    if (report != null) {
+                        getLogger().info("Azure Data Lake Store requests in the last {} milliseconds (concurrency limit {}, "
+                                + "transfer buffers in use {}):{}", new Object[]{reportingIntervalMillis, getConcurrencyLimit(), getBufferInUseCount(), report});
+                    }
+                }
+            }, reportingIntervalMillis, reportingIntervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     @OnDisabled
     public void shutdown() {
         LOG.info("Stopping Azure Data Lake File System Client service");
-        this.fileSystemClient = null;
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+        if (this.metrics != null) {
+            this.metrics.unregister();
+        }
+        if (this.ioExecutor != null) {
+            this.ioExecutor.shutdownNow();
+            this.ioExecutor = null;
+        }
+        this.fileSystem = null;
+        this.credentials = null;
+        this.bufferPool = null;
+    }
+
+    /**
+     * Creates the file system that requests are sent to. Called when the
+     * service is enabled, before anything else is set up.
+     */
+    protected DataLakeStoreFileSystem createFileSystem(final ConfigurationContext context) {
+        this.credentials = new RefreshingApplicationTokenCredentials(
+                context.getProperty(CLIENT_ID).getValue(),
+                context.getProperty(TENANT_ID).getValue(),
+                context.getProperty(CLIENT_SECRET).getValue());
+        this.tokenRefreshIntervalMillis = context.getProperty(TOKEN_REFRESH_INTERVAL).asTimePeriod(TimeUnit.MILLISECONDS);
+
+        // One client serves every account; the account is a parameter of each request
+        return new SdkDataLakeStoreFileSystem(new DataLakeStoreFileSystemManagementClientImpl(credentials));
+    }
+
+    private void scheduleTokenRefresh(final long delayMillis) {
+        final ScheduledExecutorService refresher = this.scheduler;
+        final RefreshingApplicationTokenCredentials creds = this.credentials;
+        if (refresher == null || refresher.isShutdown()) {
+            return;
+        }
+
+        refresher.schedule(new Runnable() {
+            @Override
+            public void run() {
+                long nextDelay = tokenRefreshIntervalMillis;
+                try {
+                    if (creds.refreshIfIdle()) {
+                        LOG.debug("Refreshed Azure Data Lake Store access token in {} milliseconds", creds.getLastRefreshDurationMillis());
+                    }
+                } catch (final Exception e) {
+                    nextDelay = Math.min(TOKEN_REFRESH_RETRY_MILLIS, tokenRefreshIntervalMillis);
+                    getLogger().warn("Failed to refresh Azure Data Lake Store access token after {} milliseconds ({} failures so far); "
+                            + "will retry in {} milliseconds", new Object[]{creds.getLastRefreshDurationMillis(), creds.getRefreshFailureCount(), nextDelay, e});
+                }
+                scheduleTokenRefresh(nextDelay);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the number of access tokens acquired since the service was enabled
+     */
+    @Override
+    public long getTokenRefreshCount() {
+        final RefreshingApplicationTokenCredentials creds = this.credentials;
+        return creds == null ? 0 : creds.getRefreshCount();
+    }
+
+    /**
+     * @return the number of failed token acquisitions since the service was enabled
+     */
+    @Override
+    public long getTokenRefreshFailureCount() {
+        final RefreshingApplicationTokenCredentials creds = this.credentials;
+        return creds == null ? 0 : creds.getRefreshFailureCount();
+    }
+
+    /**
+     * @return how long the most recent token acquisition took, or -1 if none has been attempted
+     */
+    @Override
+    public long getLastTokenRefreshDurationMillis() {
+        final RefreshingApplicationTokenCredentials creds = this.credentials;
+        return creds == null ? -1 : creds.getLastRefreshDurationMillis();
     }
 
     @Override
-    public List<FileStatusProperties> listFileStatus(String directoryPath) throws CloudException, IOException, IllegalArgumentException {
-        return this.fileSystemClient.getFileSystemOperations().listFileStatus(this.accountName, directoryPath).getBody().getFileStatuses().getFileStatus();
+    public List<FileStatusProperties> listFileStatus(final String directoryPath) throws CloudException, IOException, IllegalArgumentException {
+        final String key = normalizePath(directoryPath);
+        final List<FileStatusProperties> cached = getCachedListing(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final List<String> accounts = accountRouter.getAccountsForDirectory(directoryPath);
+        final ListingMerge merge = newListingMerge(accounts, key, null);
+        for (final String account : accounts) {
+            final List<FileStatusProperties> listing;
+            try {
+                listing = run(listRequest(account, directoryPath));
+            } catch (final InterruptedIOException e) {
+                throw e;
+            } catch (final IOException | CloudException | RuntimeException e) {
+                merge.onFailure(e);
+                continue;
+            }
+            merge.onSuccess(listing);
+        }
+        return await(merge);
+    }
+
+    @Override
+    public FileStatusProperties getFileStatus(final String path) throws IOException, CloudException {
+        final FileStatusProperties cached = getCachedStatus(normalizePath(path));
+        return cached != null ? cached : run(statusRequest(path));
     }
 
     @Override
-    public void createFile(String path) throws IOException, CloudException {
-        this.fileSystemClient.getFileSystemOperations().create(this.accountName, path);
+    public void createFile(final String path) throws IOException, CloudException {
+        run(createRequest(path));
     }
 
     // Create file with contents
     @Override
-    public void createFile(String path, byte[] contents, boolean force) throws IOException, CloudException {
-        this.fileSystemClient.getFileSystemOperations().create(this.accountName, path, contents, force);
+    public void createFile(final String path, final byte[] contents, final boolean force) throws IOException, CloudException {
+        run(createRequest(path, contents, force));
     }
 
     // Append to file
     @Override
-    public void appendToFile(String path, byte[] contents) throws IOException, CloudException {
-        this.fileSystemClient.getFileSystemOperations().append(this.accountName, path, contents);
+    public void appendToFile(final String path, final byte[] contents) throws IOException, CloudException {
+        run(appendRequest(path, contents));
     }
 
     @Override
-    public InputStream getFile(String path) throws IOException, CloudException {
-        return this.fileSystemClient.getFileSystemOperations().open(this.accountName, path).getBody();
+    public InputStream getFile(final String path) throws IOException, CloudException {
+        return run(openRequest(path));
     }
 
     // Concatenate files
     @Override
-    public void concatenateFiles(List<String> srcFilePaths, String destFilePath) throws IOException, CloudException {
-        this.fileSystemClient.getFileSystemOperations().concat(this.accountName, destFilePath, srcFilePaths);
+    public void concatenateFiles(final List<String> srcFilePaths, final String destFilePath) throws IOException, CloudException {
+        run(concatRequest(srcFilePaths, destFilePath));
     }
 
     // Delete concatenated file
     @Override
-    public void deleteFile(String filePath) throws IOException, CloudException {
-        this.fileSystemClient.getFileSystemOperations().delete(this.accountName, filePath);
+    public void deleteFile(final String filePath) throws IOException, CloudException {
+        run(deleteRequest(filePath));
+    }
+
+    @Override
+    public void deleteDirectory(final String path) throws IOException, CloudException {
+        runAll(deleteDirectoryRequests(path));
+    }
+
+    @Override
+    public void renameFile(final String sourcePath, final String destinationPath) throws IOException, CloudException {
+        if (isSameAccount(sourcePath, destinationPath)) {
+            run(renameRequest(sourcePath, destinationPath));
+        } else {
+            moveAcrossAccounts(sourcePath, destinationPath);
+        }
+    }
+
+    @Override
+    public void createDirectory(final String path) throws IOException, CloudException {
+        runAll(mkdirsRequests(path));
+    }
+
+    @Override
+    public String getAccountName(final String path) {
+        return accountRouter.getAccount(path);
+    }
+
+    @Override
+    public byte[] borrowBuffer() throws IOException {
+        final BufferPool pool = this.bufferPool;
+        if (pool == null) {
+            throw new IOException("Cannot borrow a transfer buffer because the service is not enabled");
+        }
+        return pool.acquire();
+    }
+
+    @Override
+    public void returnBuffer(final byte[] buffer) {
+        final BufferPool pool = this.bufferPool;
+        // Buffers still out when the service is disabled are simply dropped
+        if (pool != null) {
+            pool.release(buffer);
+        }
+    }
+
+    @Override
+    public Future<List<FileStatusProperties>> listFileStatusAsync(final String directoryPath, final AzureDataLakeStoreCallback<List<FileStatusProperties>> callback) {
+        final String key = normalizePath(directoryPath);
+        final List<FileStatusProperties> cached = getCachedListing(key);
+        if (cached != null) {
+            return completed(cached, callback);
+        }
+
+        final List<String> accounts = accountRouter.getAccountsForDirectory(directoryPath);
+        final ListingMerge merge = newListingMerge(accounts, key, callback);
+        for (final String account : accounts) {
+            submit(listRequest(account, directoryPath), merge);
+        }
+        return merge;
+    }
+
+    @Override
+    public Future<FileStatusProperties> getFileStatusAsync(final String path, final AzureDataLakeStoreCallback<FileStatusProperties> callback) {
+        final FileStatusProperties cached = getCachedStatus(normalizePath(path));
+        if (cached != null) {
+            return completed(cached, callback);
+        }
+        return submit(statusRequest(path), callback);
+    }
+
+    @Override
+    public Future<Void> createFileAsync(final String path, final AzureDataLakeStoreCallback<Void> callback) {
+        return submit(createRequest(path), callback);
+    }
+
+    @Override
+    public Future<Void> createFileAsync(final String path, final byte[] contents, final boolean force, final AzureDataLakeStoreCallback<Void> callback) {
+        return submit(createRequest(path, contents, force), callback);
+    }
+
+    @Override
+    public Future<Void> appendToFileAsync(final String path, final byte[] contents, final AzureDataLakeStoreCallback<Void> callback) {
+        return submit(appendRequest(path, contents), callback);
+    }
+
+    @Override
+    public Future<InputStream> getFileAsync(final String path, final AzureDataLakeStoreCallback<InputStream> callback) {
+        return submit(openRequest(path), callback);
+    }
+
+    @Override
+    public Future<Void> concatenateFilesAsync(final List<String> srcFilePaths, final String destFilePath, final AzureDataLakeStoreCallback<Void> callback) {
+        final Request<Void> request;
+        try {
+            request = concatRequest(srcFilePaths, destFilePath);
+        } catch (final IllegalArgumentException e) {
+            return failed(e, callback);
+        }
+        return submit(request, callback);
+    }
+
+    @Override
+    public Future<Void> deleteFileAsync(final String filePath, final AzureDataLakeStoreCallback<Void> callback) {
+        return submit(deleteRequest(filePath), callback);
+    }
+
+    @Override
+    public Future<Void> deleteDirectoryAsync(final String path, final AzureDataLakeStoreCallback<Void> callback) {
+        return submitAll(deleteDirectoryRequests(path), callback);
+    }
+
+    @Override
+    public Future<Void> renameFileAsync(final String sourcePath, final String destinationPath, final AzureDataLakeStoreCallback<Void> callback) {
+        if (isSameAccount(sourcePath, destinationPath)) {
+            return submit(renameRequest(sourcePath, destinationPath), callback);
+        }
+        return submitTask(new AdlsCall<Void>() {
+            @Override
+            public Void call() throws IOException, CloudException {
+                moveAcrossAccounts(sourcePath, destinationPath);
+                return null;
+            }
+        }, callback);
+    }
+
+    @Override
+    public Future<Void> createDirectoryAsync(final String path, final AzureDataLakeStoreCallback<Void> callback) {
+        return submitAll(mkdirsRequests(path), callback);
+    }
+
+    private List<FileStatusProperties> getCachedListing(final String key) {
+        final MetadataCache<List<FileStatusProperties>> cache = this.listingCache;
+        return cache == null ? null : cache.get(key);
+    }
+
+    private FileStatusProperties getCachedStatus(final String key) {
+        final MetadataCache<FileStatusProperties> cache = this.statusCache;
+        return cache == null ? null : cache.get(key);
+    }
+
+    private ListingMerge newListingMerge(final List<String> accounts, final String key, final AzureDataLakeStoreCallback<List<FileStatusProperties>> callback) {
+        final MetadataCache<List<FileStatusProperties>> cache = this.listingCache;
+        return new ListingMerge(accounts.size(), cache, key, cache == null ? 0 : cache.getGeneration(), callback);
+    }
+
+    private Request<List<FileStatusProperties>> listRequest(final String account, final String directoryPath) {
+        return new Request<>(AdlsOperation.LIST, account, true, 0, new AdlsCall<List<FileStatusProperties>>() {
+            @Override
+            public List<FileStatusProperties> call() throws IOException, CloudException {
+                return fileSystem.listFileStatus(account, directoryPath);
+            }
+        });
+    }
+
+    private Request<FileStatusProperties> statusRequest(final String path) {
+        final MetadataCache<FileStatusProperties> cache = this.statusCache;
+        final String key = normalizePath(path);
+        final long generation = cache == null ? 0 : cache.getGeneration();
+
+        final String owner = accountRouter.getAccount(path);
+        final List<String> candidates = new ArrayList<>();
+        candidates.add(owner);
+        for (final String account : accountRouter.getAccountsForDirectory(path)) {
+            if (!account.equals(owner)) {
+                candidates.add(account);
+            }
+        }
+
+        return new Request<>(AdlsOperation.STATUS, owner, true, 0, new AdlsCall<FileStatusProperties>() {
+            @Override
+            public FileStatusProperties call() throws IOException, CloudException {
+                // A file is on its own account. A striped directory may only exist on some of the others, so look there if it is not found.
+                CloudException notFound = null;
+                for (final String account : candidates) {
+                    try {
+                        final FileStatusProperties status = fileSystem.getFileStatus(account, path);
+                        if (cache != null) {
+                            cache.put(key, status, generation);
+                        }
+                        return status;
+                    } catch (final CloudException e) {
+                        if (RetryPolicy.getStatusCode(e) != 404) {
+                            throw e;
+                        }
+                        notFound = e;
+                    }
+                }
+                throw notFound;
+            }
+        });
+    }
+
+    private Request<Void> createRequest(final String path) {
+        final String account = accountRouter.getAccount(path);
+        return new Request<>(AdlsOperation.CREATE, account, false, 0, new AdlsCall<Void>() {
+            @Override
+            public Void call() throws IOException, CloudException {
+                try {
+                    fileSystem.create(account, path);
+                } finally {
+                    invalidateMetadata(path, false);
+                }
+                return null;
+            }
+        });
+    }
+
+    private Request<Void> createRequest(final String path, final byte[] contents, final boolean force) {
+        final String account = accountRouter.getAccount(path);
+        // Overwriting with the same contents is harmless, so a forced create may be retried after an I/O error
+        return new Request<>(AdlsOperation.CREATE, account, force, contents.length, new AdlsCall<Void>() {
+            @Override
+            public Void call() throws IOException, CloudException {
+                try {
+                    fileSystem.create(account, path, contents, force);
+                } finally {
+                    invalidateMetadata(path, false);
+                }
+                return null;
+            }
+        });
+    }
+
+    private Request<Void> appendRequest(final String path, final byte[] contents) {
+        final String account = accountRouter.getAccount(path);
+        return new Request<>(AdlsOperation.APPEND, account, false, contents.length, new AdlsCall<Void>() {
+            @Override
+            public Void call() throws IOException, CloudException {
+                try {
+                    fileSystem.append(account, path, contents);
+                } finally {
+                    invalidateMetadata(path, false);
+                }
+                return null;
+            }
+        });
+    }
+
+    private Request<InputStream> openRequest(final String path) {
+        final String account = accountRouter.getAccount(path);
+        final RequestPriority priority = RequestPriority.current();
+        return new Request<>(AdlsOperation.OPEN, account, true, 0, new AdlsCall<InputStream>() {
+            @Override
+            public InputStream call() throws IOException, CloudException {
+                final InputStream in = fileSystem.open(account, path);
+                return new TransferInputStream(in, metrics.get(AdlsOperation.OPEN), bandwidthGovernor, priority);
+            }
+        });
+    }
+
+    /**
+     * @throws IllegalArgumentException if the files are stored on different accounts
+     */
+    private Request<Void> concatRequest(final List<String> srcFilePaths, final String destFilePath) {
+        final String account = accountRouter.getAccount(destFilePath);
+        for (final String srcFilePath : srcFilePaths) {
+            if (!account.equals(accountRouter.getAccount(srcFilePath))) {
+                throw new IllegalArgumentException("Cannot concatenate " + srcFilePath + " into " + destFilePath
+                        + " because they are stored on different accounts");
+            }
+        }
+
+        return new Request<>(AdlsOperation.CONCAT, account, false, 0, new AdlsCall<Void>() {
+            @Override
+            public Void call() throws IOException, CloudException {
+                try {
+                    fileSystem.concat(account, destFilePath, srcFilePaths);
+                } finally {
+                    invalidateMetadata(destFilePath, false);
+                    for (final String srcFilePath : srcFilePaths) {
+                        invalidateMetadata(srcFilePath, false);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    private Request<Void> deleteRequest(final String filePath) {
+        final String account = accountRouter.getAccount(filePath);
+        return new Request<>(AdlsOperation.DELETE, account, true, 0, new AdlsCall<Void>() {
+            @Override
+            public Void call() throws IOException, CloudException {
+                try {
+                    fileSystem.delete(account, filePath);
+                } finally {
+                    invalidateMetadata(filePath, false);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * A directory exists on every account it is striped across, so it is
+     * deleted on each of them. Deleting a path that does not exist on an
+     * account succeeds.
+     */
+    private List<Request<Void>> deleteDirectoryRequests(final String path) {
+        final List<Request<Void>> requests = new ArrayList<>();
+        for (final String account : accountRouter.getAccountsForDirectory(path)) {
+            requests.add(new Request<>(AdlsOperation.DELETE, account, true, 0, new AdlsCall<Void>() {
+                @Override
+                public Void call() throws IOException, CloudException {
+                    try {
+                        fileSystem.delete(account, path);
+                    } finally {
+                        invalidateMetadata(path, true);
+                    }
+                    return null;
+                }
+            }));
+        }
+        return requests;
+    }
+
+    private boolean isSameAccount(final String sourcePath, final String destinationPath) {
+        return accountRouter.getAccount(sourcePath).equals(accountRouter.getAccount(destinationPath));
+    }
+
+    private Request<Void> renameRequest(final String sourcePath, final String destinationPath) {
+        final String account = accountRouter.getAccount(sourcePath);
+        return new Request<>(AdlsOperation.RENAME, account, false, 0, new AdlsCall<Void>() {
+            @Override
+            public Void call() throws IOException, CloudException {
+                boolean renamed;
+                try {
+                    renamed = fileSystem.rename(account, sourcePath, destinationPath);
+                    // Renames do not create the destination directory, so create it and try again only if that is why it failed
+                    final String destinationParent = getParent(normalizePath(destinationPath));
+                    if (!renamed && !exists(account, destinationParent)) {
+                        fileSystem.mkdirs(account, destinationParent);
+                        renamed = fileSystem.rename(account, sourcePath, destinationPath);
+                    }
+                } finally {
+                    invalidateMetadata(sourcePath, true);
+                    invalidateMetadata(destinationPath, true);
+                }
+                if (!renamed) {
+                    throw new IOException("Could not move " + sourcePath + " to " + destinationPath
+                            + "; either the source does not exist or the destination already exists");
+                }
+                return null;
+            }
+        });
+    }
+
+    private boolean exists(final String account, final String path) throws IOException, CloudException {
+        try {
+            fileSystem.getFileStatus(account, path);
+            return true;
+        } catch (final CloudException e) {
+            if (RetryPolicy.getStatusCode(e) == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A rename cannot cross accounts, so the content is copied through a
+     * transfer buffer and the source is deleted once the copy is complete.
+     * Every step is a request of its own and is retried as such; the move as a
+     * whole is never repeated, since a second copy would find the first in
+     * place. A partial copy is deleted again if the copy fails. If only
+     * deleting the source fails, the file is left in both places.
+     */
+    private void moveAcrossAccounts(final String sourcePath, final String destinationPath) throws IOException, CloudException {
+        copy(sourcePath, destinationPath);
+        run(deleteRequest(sourcePath));
+    }
+
+    private void copy(final String sourcePath, final String destinationPath) throws IOException, CloudException {
+        final byte[] buffer = borrowBuffer();
+        boolean created = false;
+        try (final InputStream in = run(openRequest(sourcePath))) {
+            int length;
+            do {
+                length = fill(in, buffer);
+                final byte[] chunk = length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+                if (!created) {
+                    // Fails if the destination exists, like a rename
+                    run(createRequest(destinationPath, chunk, false));
+                    created = true;
+                } else if (length > 0) {
+                    run(appendRequest(destinationPath, chunk));
+                }
+            } while (length == buffer.length);
+        } catch (final IOException | CloudException | RuntimeException e) {
+            if (created) {
+                try {
+                    run(deleteRequest(destinationPath));
+                } catch (final IOException | CloudException | RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        } finally {
+            returnBuffer(buffer);
+        }
+    }
+
+    /**
+     * @return the number of bytes read, less than the buffer's length only at the end of the stream
+     */
+    private static int fill(final InputStream in, final byte[] buffer) throws IOException {
+        int filled = 0;
+        while (filled < buffer.length) {
+            final int count = in.read(buffer, filled, buffer.length - filled);
+            if (count < 0) {
+                break;
+            }
+            filled += count;
+        }
+        return filled;
+    }
+
+    /**
+     * A directory exists on every account that holds files below it, so it is
+     * created on each account it may be striped across.
+     */
+    private List<Request<Void>> mkdirsRequests(final String path) {
+        final List<Request<Void>> requests = new ArrayList<>();
+        for (final String account : accountRouter.getAccountsForDirectory(path)) {
+            requests.add(new Request<>(AdlsOperation.MKDIRS, account, true, 0, new AdlsCall<Void>() {
+                @Override
+                public Void call() throws IOException, CloudException {
+                    try {
+                        fileSystem.mkdirs(account, path);
+                    } finally {
+                        invalidateMetadata(path, false);
+                    }
+                    return null;
+                }
+            }));
+        }
+        return requests;
+    }
+
+    /**
+     * @return the number of listings and file statuses served from the metadata cache
+     */
+    @Override
+    public long getMetadataCacheHitCount() {
+        final MetadataCache<List<FileStatusProperties>> listings = this.listingCache;
+        final MetadataCache<FileStatusProperties> statuses = this.statusCache;
+        return listings == null ? 0 : listings.getHitCount() + statuses.getHitCount();
+    }
+
+    /**
+     * @return the number of listings and file statuses that had to be requested from Azure Data Lake Store
+     * while the metadata cache was enabled
+     */
+    @Override
+    public long getMetadataCacheMissCount() {
+        final MetadataCache<List<FileStatusProperties>> listings = this.listingCache;
+        final MetadataCache<FileStatusProperties> statuses = this.statusCache;
+        return listings == null ? 0 : listings.getMissCount() + statuses.getMissCount();
+    }
+
+    /**
+     * Drops cached metadata that a change to the given path may have made stale:
+     * the path itself and the listing of its parent directory.
+     *
+     * @param recursive whether the path may be a directory whose contents changed too
+     */
+    private void invalidateMetadata(final String path, final boolean recursive) {
+        final MetadataCache<List<FileStatusProperties>> listings = this.listingCache;
+        final MetadataCache<FileStatusProperties> statuses = this.statusCache;
+        if (listings == null) {
+            return;
+        }
+
+        final String key = normalizePath(path);
+        if (recursive) {
+            listings.invalidateTree(key);
+            statuses.invalidateTree(key);
+        } else {
+            listings.invalidate(key);
+            statuses.invalidate(key);
+        }
+        listings.invalidate(getParent(key));
+    }
+
+    private static String normalizePath(final String path) {
+        if (path.length() > 1 && path.endsWith("/")) {
+            return path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    private static String getParent(final String normalizedPath) {
+        final int lastSlash = normalizedPath.lastIndexOf('/');
+        return lastSlash <= 0 ? "/" : normalizedPath.substring(0, lastSlash);
+    }
+
+    /**
+     * @return the number of requests that were retried since the service was enabled
+     */
+    @Override
+    public long getRetryCount() {
+        final AzureDataLakeStoreMetrics serviceMetrics = this.metrics;
+        return serviceMetrics == null ? 0 : serviceMetrics.getRetryCount();
+    }
+
+    /**
+     * @return the number of requests the account rejected as throttled since the service was enabled
+     */
+    @Override
+    public long getThrottledCount() {
+        final AzureDataLakeStoreMetrics serviceMetrics = this.metrics;
+        return serviceMetrics == null ? 0 : serviceMetrics.getThrottledCount();
+    }
+
+    /**
+     * @return the number of transfer buffers allocated since the service was enabled, including temporary ones
+     */
+    @Override
+    public long getBufferAllocationCount() {
+        final BufferPool pool = this.bufferPool;
+        return pool == null ? 0 : pool.getAllocationCount();
+    }
+
+    /**
+     * @return the number of times every pooled transfer buffer stayed in use for the whole wait time, so a smaller temporary buffer was
+     * handed out instead
+     */
+    @Override
+    public long getBufferPoolFallbackCount() {
+        final BufferPool pool = this.bufferPool;
+        return pool == null ? 0 : pool.getFallbackCount();
+    }
+
+    /**
+     * @return the total time spent waiting for a pooled transfer buffer since the service was enabled
+     */
+    @Override
+    public long getBufferWaitTimeMillis() {
+        final BufferPool pool = this.bufferPool;
+        return pool == null ? 0 : pool.getWaitTimeMillis();
+    }
+
+    @Override
+    public int getBufferInUseCount() {
+        final BufferPool pool = this.bufferPool;
+        return pool == null ? 0 : pool.getInUseCount();
+    }
+
+    /**
+     * @return the current adaptive limit on concurrent requests, summed over all accounts
+     */
+    @Override
+    public int getConcurrencyLimit() {
+        final Map<String, AdaptiveConcurrencyLimiter> limiters = this.concurrencyLimiters;
+        int total = 0;
+        if (limiters != null) {
+            for (final AdaptiveConcurrencyLimiter limiter : limiters.values()) {
+                total += limiter.getLimit();
+            }
+        }
+        return total;
+    }
+
+    private interface AdlsCall<T> {
+
+        T call() throws IOException, CloudException;
+    }
+
+    /**
+     * A call to one account, with what is needed to limit and retry it.
+     */
+    private static class Request<T> {
+
+        private final AdlsOperation operation;
+        // The account the request is sent to, whose concurrency limit applies
+        private final String account;
+        // Whether the request may also be retried after an I/O error, timeout or server error, when it is unknown
+        // whether the server applied it. Other requests are only retried when throttled.
+        private final boolean idempotent;
+        // The number of bytes the request sends, charged against the bandwidth limit
+        private final long uploadBytes;
+        private final AdlsCall<T> call;
+
+        private Request(final AdlsOperation operation, final String account, final boolean idempotent, final long uploadBytes, final AdlsCall<T> call) {
+            this.operation = operation;
+            this.account = account;
+            this.idempotent = idempotent;
+            this.uploadBytes = uploadBytes;
+            this.call = call;
+        }
+    }
+
+    /**
+     * Runs a request on the calling thread, so synchronous callers never queue
+     * behind asynchronous requests or hold an I/O thread while they wait.
+     */
+    private <T> T run(final Request<T> request) throws IOException, CloudException {
+        return execute(request, RequestPriority.current());
+    }
+
+    private void runAll(final List<Request<Void>> requests) throws IOException, CloudException {
+        for (final Request<Void> request : requests) {
+            run(request);
+        }
+    }
+
+    private Future<Void> submitAll(final List<Request<Void>> requests, final AzureDataLakeStoreCallback<Void> callback) {
+        if (requests.size() == 1) {
+            return submit(requests.get(0), callback);
+        }
+        final AllOf all = new AllOf(requests.size(), callback);
+        for (final Request<Void> request : requests) {
+            submit(request, all);
+        }
+        return all;
+    }
+
+    private <T> Future<T> submit(final Request<T> request, final AzureDataLakeStoreCallback<T> callback) {
+        // The priority is bound to the caller's thread, so capture it before handing the request to an I/O thread
+        final RequestPriority priority = RequestPriority.current();
+        return ioExecutor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                final T result;
+                try {
+                    result = execute(request, priority);
+                } catch (final Exception e) {
+                    if (callback != null) {
+                        callback.onFailure(e);
+                    }
+                    throw e;
+                }
+                if (callback != null) {
+                    callback.onSuccess(result);
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Runs a task made of several requests on an I/O thread, with the caller's priority.
+     */
+    private <T> Future<T> submitTask(final AdlsCall<T> task, final AzureDataLakeStoreCallback<T> callback) {
+        final RequestPriority priority = RequestPriority.current();
+        return ioExecutor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                final T result;
+                RequestPriority.setCurrent(priority);
+                try {
+                    result = task.call();
+                } catch (final Exception e) {
+                    if (callback != null) {
+                        callback.onFailure(e);
+                    }
+                    throw e;
+                } finally {
+                    RequestPriority.clearCurrent();
+                }
+                if (callback != null) {
+                    callback.onSuccess(result);
+                }
+                return result;
+            }
+        });
+    }
+
+    private static <T> Future<T> completed(final T value, final AzureDataLakeStoreCallback<T> callback) {
+        final FutureTask<T> future = new FutureTask<>(new Callable<T>() {
+            @Override
+            public T call() {
+                return value;
+            }
+        });
+        future.run();
+        if (callback != null) {
+            callback.onSuccess(value);
+        }
+        return future;
+    }
+
+    private static <T> Future<T> failed(final Exception failure, final AzureDataLakeStoreCallback<T> callback) {
+        final FutureTask<T> future = new FutureTask<>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                throw failure;
+            }
+        });
+        future.run();
+        if (callback != null) {
+            callback.onFailure(failure);
+        }
+        return future;
+    }
+
+    /**
+     * Waits for a request and rethrows its failure as a synchronous call
+     * would have. If interrupted, the request is cancelled.
+     */
+    private static <T> T await(final Future<T> future) throws IOException, CloudException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a request to Azure Data Lake Store");
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof CloudException) {
+                throw (CloudException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Runs a request within the rate and concurrency limits, retrying
+     * throttled and transient failures with backoff. Every attempt is charged
+     * against the rate limits.
+     */
+    private <T> T execute(final Request<T> request, final RequestPriority priority) throws IOException, CloudException {
+        final OperationMetrics operationMetrics = this.metrics.get(request.operation);
+        final long startNanos = System.nanoTime();
+        operationMetrics.requestStarted();
+        boolean failed = true;
+        try {
+            final T result = executeWithRetries(operationMetrics, concurrencyLimiters.get(request.account), request.idempotent, request.uploadBytes,
+                    priority, request.call);
+            operationMetrics.bytesTransferred(request.uploadBytes);
+            failed = false;
+            return result;
+        } finally {
+            operationMetrics.requestCompleted(System.nanoTime() - startNanos, failed);
+        }
+    }
+
+    private <T> T executeWithRetries(final OperationMetrics operationMetrics, final AdaptiveConcurrencyLimiter limiter, final boolean idempotent,
+            final long uploadBytes, final RequestPriority priority, final AdlsCall<T> call) throws IOException, CloudException {
+        final RetryPolicy policy = this.retryPolicy;
+        final TokenBucketGovernor bandwidth = this.bandwidthGovernor;
+        final TokenBucketGovernor requestRate = this.requestRateGovernor;
+
+        for (int attempt = 0;; attempt++) {
+            final long permit;
+            try {
+                // Wait for the rate limits before taking a concurrency permit, so requests held back by them do not count as in flight
+                if (requestRate != null) {
+                    requestRate.acquire(1, priority);
+                }
+                if (bandwidth != null) {
+                    bandwidth.acquire(uploadBytes, priority);
+                }
+                permit = limiter.acquire();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to send a request to Azure Data Lake Store");
+            }
+
+            final long backoffMillis;
+            boolean throttled = false;
+            try {
+                return call.call();
+            } catch (final CloudException e) {
+                throttled = RetryPolicy.isThrottled(e);
+                if (throttled) {
+                    operationMetrics.throttled();
+                }
+                // A timeout or server error may have been applied anyway, so only a throttled request is known to be safe to resend
+                final boolean retryable = idempotent ? RetryPolicy.isRetryable(e) : throttled;
+                if (!retryable || attempt >= policy.getMaxRetries()) {
+                    throw e;
+                }
+                backoffMillis = policy.getBackoffMillis(attempt, RetryPolicy.getRetryAfterMillis(e));
+                LOG.debug("Request failed with status {}; retrying in {} milliseconds", RetryPolicy.getStatusCode(e), backoffMillis);
+            } catch (final IOException e) {
+                if (!idempotent || attempt >= policy.getMaxRetries()) {
+                    throw e;
+                }
+                backoffMillis = policy.getBackoffMillis(attempt, -1);
+                LOG.debug("Request failed with {}; retrying in {} milliseconds", e.toString(), backoffMillis);
+            } finally {
+                limiter.release(permit, throttled);
+            }
+
+            operationMetrics.retried();
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while backing off before retrying a request to Azure Data Lake Store");
+            }
+        }
+    }
+
+    /**
+     * Completes once every one of a set of requests has, failing with the
+     * first failure if any of them failed.
+     */
+    private static class AllOf extends FutureTask<Void> implements AzureDataLakeStoreCallback<Void> {
+
+        private static final Callable<Void> NOT_RUN = new Callable<Void>() {
+            @Override
+            public Void call() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        private final AzureDataLakeStoreCallback<Void> callback;
+        private int remaining;
+        private Throwable failure;
+
+        private AllOf(final int requestCount, final AzureDataLakeStoreCallback<Void> callback) {
+            super(NOT_RUN);
+            this.remaining = requestCount;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSuccess(final Void result) {
+            synchronized (this) {
+                if (--remaining > 0) {
+                    return;
+                }
+            }
+            complete();
+        }
+
+        @Override
+        public void onFailure(final Throwable t) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = t;
+                }
+                if (--remaining > 0) {
+                    return;
+                }
+            }
+            complete();
+        }
+
+        private void complete() {
+            if (failure != null) {
+                setException(failure);
+                if (callback != null) {
+                    callback.onFailure(failure);
+                }
+                return;
+            }
+            set(null);
+            if (callback != null) {
+                callback.onSuccess(null);
+            }
+        }
+    }
+
+    /**
+     * Combines the listings of one directory from each account it may be
+     * striped across. Directories exist on every account that holds files
+     * below them, so entries are merged by name. An account on which the
+     * directory does not exist contributes nothing; the listing only fails
+     * with not found if no account has the directory.
+     */
+    private static class ListingMerge extends FutureTask<List<FileStatusProperties>> implements AzureDataLakeStoreCallback<List<FileStatusProperties>> {
+
+        private static final Callable<List<FileStatusProperties>> NOT_RUN = new Callable<List<FileStatusProperties>>() {
+            @Override
+            public List<FileStatusProperties> call() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        private final MetadataCache<List<FileStatusProperties>> cache;
+        private final String cacheKey;
+        private final long cacheGeneration;
+        private final AzureDataLakeStoreCallback<List<FileStatusProperties>> callback;
+
+        private final Map<String, FileStatusProperties> entries = new LinkedHashMap<>();
+        private int remaining;
+        private boolean found;
+        private Throwable failure;
+
+        private ListingMerge(final int accountCount, final MetadataCache<List<FileStatusProperties>> cache, final String cacheKey,
+                final long cacheGeneration, final AzureDataLakeStoreCallback<List<FileStatusProperties>> callback) {
+            super(NOT_RUN);
+            this.remaining = accountCount;
+            this.cache = cache;
+            this.cacheKey = cacheKey;
+            this.cacheGeneration = cacheGeneration;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSuccess(final List<FileStatusProperties> listing) {
+            synchronized (this) {
+                found = true;
+                if (listing != null) {
+                    for (final FileStatusProperties entry : listing) {
+                        if (!entries.containsKey(entry.getPathSuffix())) {
+                            entries.put(entry.getPathSuffix(), entry);
+                        }
+                    }
+                }
+                if (--remaining > 0) {
+                    return;
+                }
+            }
+            complete();
+        }
+
+        @Override
+        public void onFailure(final Throwable t) {
+            synchronized (this) {
+                final boolean notFound = t instanceof CloudException && RetryPolicy.getStatusCode((CloudException) t) == 404;
+                if (failure == null || !notFound) {
+                    failure = t;
+                }
+                if (--remaining > 0) {
+                    return;
+                }
+            }
+            complete();
+        }
+
+        private void complete() {
+            final boolean notFound = failure instanceof CloudException && RetryPolicy.getStatusCode((CloudException) failure) == 404;
+            if (failure != null && (!notFound || !found)) {
+                setException(failure);
+                if (callback != null) {
+                    callback.onFailure(failure);
+                }
+                return;
+            }
+
+            // The same list is handed to every caller that hits the cache
+            final List<FileStatusProperties> listing = Collections.unmodifiableList(new ArrayList<>(entries.values()));
+            if (cache != null) {
+                cache.put(cacheKey, listing, cacheGeneration);
+            }
+            set(listing);
+            if (callback != null) {
+                callback.onSuccess(listing);
+            }
+        }
     }
 }
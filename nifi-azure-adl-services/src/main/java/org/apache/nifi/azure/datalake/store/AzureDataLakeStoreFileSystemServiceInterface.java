@@ -10,6 +10,7 @@ import com.microsoft.azure.management.datalake.store.models.FileStatusProperties
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.Future;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.components.PropertyDescriptor;
@@ -28,6 +29,26 @@ public interface AzureDataLakeStoreFileSystemServiceInterface extends Controller
             .required(true)
             .build();
 
+    static final PropertyDescriptor ADDITIONAL_ACCOUNT_NAMES = new PropertyDescriptor.Builder()
+            .name("Additional Account Names")
+            .description("A comma-separated list of further Azure DataLake Store accounts to stripe files across, together with Account Name. "
+                    + "Each directory's files are placed on an account by a consistent hash of the directory's path, unless an Account "
+                    + "Prefix Rule applies; directory listings are merged from all accounts, and directories are created and deleted on all "
+                    + "of them. Files of the same directory can always be renamed or concatenated on the server. A move to a directory on "
+                    + "another account copies the file and deletes the original. All accounts must be accessible with the same credentials")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .required(false)
+            .build();
+
+    static final PropertyDescriptor ACCOUNT_PREFIX_RULES = new PropertyDescriptor.Builder()
+            .name("Account Prefix Rules")
+            .description("A comma-separated list of <path prefix>=<account name> rules, e.g. /raw=rawaccount,/curated=curatedaccount. "
+                    + "Everything under a prefix is stored on its account, which must be Account Name or one of the Additional Account Names. "
+                    + "The longest matching prefix wins")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .required(false)
+            .build();
+
     static final PropertyDescriptor TENANT_ID = new PropertyDescriptor.Builder()
             .name("Tenant ID")
             .description("Tenant ID")
@@ -51,8 +72,156 @@ public interface AzureDataLakeStoreFileSystemServiceInterface extends Controller
             .sensitive(true)
             .build();
 
+    static final PropertyDescriptor TOKEN_REFRESH_INTERVAL = new PropertyDescriptor.Builder()
+            .name("Token Refresh Interval")
+            .description("How often the OAuth access token is refreshed in the background. Should be a few minutes shorter than "
+                    + "the lifetime of the tokens issued by Azure Active Directory, which is typically one hour")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .defaultValue("50 mins")
+            .required(true)
+            .build();
+
+    static final PropertyDescriptor MAX_RETRIES = new PropertyDescriptor.Builder()
+            .name("Max Retries")
+            .description("How many times a request that was throttled or failed with a transient server error is retried before the error is "
+                    + "returned to the caller")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .defaultValue("5")
+            .required(true)
+            .build();
+
+    static final PropertyDescriptor RETRY_INITIAL_BACKOFF = new PropertyDescriptor.Builder()
+            .name("Retry Initial Backoff")
+            .description("The upper bound of the random delay before the first retry. The bound doubles with every further retry")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .defaultValue("100 millis")
+            .required(true)
+            .build();
+
+    static final PropertyDescriptor RETRY_MAX_BACKOFF = new PropertyDescriptor.Builder()
+            .name("Retry Max Backoff")
+            .description("The longest delay between two attempts of the same request")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .defaultValue("30 secs")
+            .required(true)
+            .build();
+
+    static final PropertyDescriptor MAX_CONCURRENT_REQUESTS = new PropertyDescriptor.Builder()
+            .name("Max Concurrent Requests")
+            .description("The most requests that all processors using this service may have in flight at once against each account. "
+                    + "The actual limit adapts below this value: it is halved whenever the account throttles and grows back slowly while "
+                    + "requests succeed")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .defaultValue("64")
+            .required(true)
+            .build();
+
+    static final PropertyDescriptor IO_THREADS = new PropertyDescriptor.Builder()
+            .name("I/O Threads")
+            .description("The number of threads the service uses to run asynchronous requests, shared by all processors using the service. "
+                    + "Synchronous requests run on the caller's thread. Should be at least Max Concurrent Requests, since requests waiting for "
+                    + "the concurrency limit or backing off hold a thread")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .defaultValue("64")
+            .required(true)
+            .build();
+
+    static final PropertyDescriptor METADATA_CACHE_TTL = new PropertyDescriptor.Builder()
+            .name("Metadata Cache TTL")
+            .description("How long directory listings and file statuses are cached and shared by all processors using this service. "
+                    + "Changes made through this service invalidate the affected entries immediately; changes made by other clients may "
+                    + "go unseen for up to this long. Set to 0 secs to disable the cache")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .defaultValue("0 secs")
+            .required(true)
+            .build();
+
+    static final PropertyDescriptor METADATA_CACHE_SIZE = new PropertyDescriptor.Builder()
+            .name("Metadata Cache Size")
+            .description("The maximum number of directory listings and of file statuses to cache. The least recently used entries are evicted first")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .defaultValue("1000")
+            .required(true)
+            .build();
+
+    static final PropertyDescriptor MAX_BYTES_PER_SECOND = new PropertyDescriptor.Builder()
+            .name("Max Bandwidth")
+            .description("The most data per second that all processors using this service may upload and download together, e.g. 500 MB. "
+                    + "When the limit is reached, processors share the bandwidth in proportion to the weight of their Request Priority. "
+                    + "If not set, bandwidth is not limited")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .required(false)
+            .build();
+
+    static final PropertyDescriptor MAX_REQUESTS_PER_SECOND = new PropertyDescriptor.Builder()
+            .name("Max Requests Per Second")
+            .description("The most requests per second that all processors using this service may send together, retries included. "
+                    + "When the limit is reached, processors share the rate in proportion to the weight of their Request Priority. "
+                    + "If not set, the request rate is not limited")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(false)
+            .build();
+
+    static final PropertyDescriptor TRANSFER_BUFFER_SIZE = new PropertyDescriptor.Builder()
+            .name("Transfer Buffer Size")
+            .description("The size of the buffers that uploads and downloads are staged in. Uploads are sent as one append request per buffer, "
+                    + "so larger buffers mean fewer requests for large files")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .defaultValue("4 MB")
+            .required(true)
+            .build();
+
+    static final PropertyDescriptor TRANSFER_BUFFER_POOL_SIZE = new PropertyDescriptor.Builder()
+            .name("Transfer Buffer Pool Size")
+            .description("The number of transfer buffers kept for reuse by all processors using this service. Bounds the memory held for "
+                    + "transfers to this many times the Transfer Buffer Size; buffers are allocated as they are first needed")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .defaultValue("16")
+            .required(true)
+            .build();
+
+    static final PropertyDescriptor TRANSFER_BUFFER_WAIT_TIME = new PropertyDescriptor.Builder()
+            .name("Transfer Buffer Wait Time")
+            .description("How long a transfer waits for a pooled buffer when all of them are in use. After that it allocates a temporary "
+                    + "buffer of at most 64 KB that is discarded when the transfer completes. The service's BufferPoolFallbackCount JMX "
+                    + "attribute counts how often this happens; if it keeps growing, increase the Transfer Buffer Pool Size")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .defaultValue("5 secs")
+            .required(true)
+            .build();
+
+    static final PropertyDescriptor METRICS_REPORTING_INTERVAL = new PropertyDescriptor.Builder()
+            .name("Metrics Reporting Interval")
+            .description("If set, a summary of request latencies (p50/p99/p999), throughput, errors, retries and throttling per kind of request "
+                    + "is logged at INFO level this often, covering the requests completed since the previous summary. Set the service's "
+                    + "bulletin level to INFO to see it as a bulletin. The same metrics are always available through JMX")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .required(false)
+            .build();
+
     List<FileStatusProperties> listFileStatus(String directoryPath) throws CloudException, IOException, IllegalArgumentException;
 
+    FileStatusProperties getFileStatus(String path) throws IOException, CloudException;
+
+    /**
+     * @return the Data Lake Store account that stores the given path
+     */
+    String getAccountName(String path);
+
+    /**
+     * Borrows a buffer from the service's pool of transfer buffers. A buffer
+     * has the configured Transfer Buffer Size unless the pool stayed exhausted
+     * for the whole wait time, in which case it is smaller, so callers must go
+     * by its length. It must be handed back exactly once with
+     * {@link #returnBuffer(byte[])}, after the last request that uses it has
+     * completed.
+     *
+     * @throws IOException if interrupted while waiting for a buffer, or if the service is not enabled
+     */
+    byte[] borrowBuffer() throws IOException;
+
+    void returnBuffer(byte[] buffer);
+
     void createFile(String path) throws IOException, CloudException;
 
     void createFile(String path, byte[] contents, boolean force) throws IOException, CloudException;
@@ -64,4 +233,51 @@ public interface AzureDataLakeStoreFileSystemServiceInterface extends Controller
     void concatenateFiles(List<String> srcFilePaths, String destFilePath) throws IOException, CloudException;
 
     void deleteFile(String filePath) throws IOException, CloudException;
+
+    /**
+     * Deletes an empty directory. When striping across accounts, the
+     * directory is deleted on every account.
+     */
+    void deleteDirectory(String path) throws IOException, CloudException;
+
+    /**
+     * Moves a file. Missing parent directories of the destination are
+     * created. Within an account the move is done on the server without
+     * transferring the content; a move to another account copies the content
+     * and then deletes the source, and is not atomic.
+     *
+     * @throws IOException if the source does not exist or the destination already exists
+     */
+    void renameFile(String sourcePath, String destinationPath) throws IOException, CloudException;
+
+    /**
+     * Creates a directory and any missing parents. When striping across
+     * accounts, the directory is created on every account.
+     */
+    void createDirectory(String path) throws IOException, CloudException;
+
+    // Asynchronous variants. Requests run on the service's I/O threads so the caller's thread is free while they are in flight.
+    // The callback may be null; the returned Future completes with the same outcome, wrapping failures in an ExecutionException.
+
+    Future<List<FileStatusProperties>> listFileStatusAsync(String directoryPath, AzureDataLakeStoreCallback<List<FileStatusProperties>> callback);
+
+    Future<FileStatusProperties> getFileStatusAsync(String path, AzureDataLakeStoreCallback<FileStatusProperties> callback);
+
+    Future<Void> createFileAsync(String path, AzureDataLakeStoreCallback<Void> callback);
+
+    Future<Void> createFileAsync(String path, byte[] contents, boolean force, AzureDataLakeStoreCallback<Void> callback);
+
+    Future<Void> appendToFileAsync(String path, byte[] contents, AzureDataLakeStoreCallback<Void> callback);
+
+    Future<InputStream> getFileAsync(String path, AzureDataLakeStoreCallback<InputStream> callback);
+
+    Future<Void> concatenateFilesAsync(List<String> srcFilePaths, String destFilePath, AzureDataLakeStoreCallback<Void> callback);
+
+    Future<Void> deleteFileAsync(String filePath, AzureDataLakeStoreCallback<Void> callback);
+
+    Future<Void> deleteDirectoryAsync(String path, AzureDataLakeStoreCallback<Void> callback);
+
+    Future<Void> renameFileAsync(String sourcePath, String destinationPath, AzureDataLakeStoreCallback<Void> callback);
+
+    Future<Void> createDirectoryAsync(String path, AzureDataLakeStoreCallback<Void> callback);
 }
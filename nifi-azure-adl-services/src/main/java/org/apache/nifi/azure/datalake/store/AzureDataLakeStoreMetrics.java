@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The metrics of one enabled service: an {@link OperationMetrics} per kind of
+ * request, published through JMX under
+ * {@code org.apache.nifi.azure.datalake.store:type=AzureDataLakeStoreFileSystemService,id=<service id>}.
+ */
+class AzureDataLakeStoreMetrics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AzureDataLakeStoreMetrics.class);
+    private static final String JMX_DOMAIN = "org.apache.nifi.azure.datalake.store";
+
+    private final Map<AdlsOperation, OperationMetrics> operations = new EnumMap<>(AdlsOperation.class);
+    private final Map<AdlsOperation, LatencyHistogram.Snapshot> lastReported = new EnumMap<>(AdlsOperation.class);
+    private final Map<AdlsOperation, Long> lastReportedBytes = new EnumMap<>(AdlsOperation.class);
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+
+    AzureDataLakeStoreMetrics() {
+        for (final AdlsOperation operation : AdlsOperation.values()) {
+            final OperationMetrics metrics = new OperationMetrics();
+            operations.put(operation, metrics);
+            lastReported.put(operation, metrics.latencySnapshot());
+            lastReportedBytes.put(operation, 0L);
+        }
+    }
+
+    OperationMetrics get(final AdlsOperation operation) {
+        return operations.get(operation);
+    }
+
+    long getRetryCount() {
+        long total = 0;
+        for (final OperationMetrics metrics : operations.values()) {
+            total += metrics.getRetryCount();
+        }
+        return total;
+    }
+
+    long getThrottledCount() {
+        long total = 0;
+        for (final OperationMetrics metrics : operations.values()) {
+            total += metrics.getThrottledCount();
+        }
+        return total;
+    }
+
+    /**
+     * Registers the service and per-operation MBeans. Failures are logged and
+     * otherwise ignored; the service works without JMX.
+     */
+    synchronized void register(final String serviceId, final AzureDataLakeStoreServiceMXBean service) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final String baseName = JMX_DOMAIN + ":type=AzureDataLakeStoreFileSystemService,id=" + ObjectName.quote(serviceId);
+        try {
+            registerBean(server, new ObjectName(baseName), service);
+            for (final Map.Entry<AdlsOperation, OperationMetrics> entry : operations.entrySet()) {
+                registerBean(server, new ObjectName(baseName + ",operation=" + entry.getKey().getDisplayName()), entry.getValue());
+            }
+        } catch (final JMException e) {
+            LOG.warn("Failed to register Azure Data Lake Store metrics with JMX", e);
+        }
+    }
+
+    private void registerBean(final MBeanServer server, final ObjectName name, final Object bean) throws JMException {
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(bean, name);
+        registeredNames.add(name);
+    }
+
+    synchronized void unregister() {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (final ObjectName name : registeredNames) {
+            try {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (final JMException e) {
+                LOG.debug("Failed to unregister {}", name, e);
+            }
+        }
+        registeredNames.clear();
+    }
+
+    /**
+     * Summarizes the requests completed since the previous call, one line per
+     * kind of request that had any.
+     *
+     * @return the summary, or null if there were no requests
+     */
+    synchronized String report(final long intervalMillis) {
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<AdlsOperation, OperationMetrics> entry : operations.entrySet()) {
+            final OperationMetrics metrics = entry.getValue();
+            final LatencyHistogram.Snapshot current = metrics.latencySnapshot();
+            final LatencyHistogram.Snapshot interval = current.minus(lastReported.get(entry.getKey()));
+            final long bytes = metrics.getBytesTransferred();
+            final long intervalBytes = bytes - lastReportedBytes.get(entry.getKey());
+            lastReported.put(entry.getKey(), current);
+            lastReportedBytes.put(entry.getKey(), bytes);
+
+            if (interval.getCount() == 0) {
+                continue;
+            }
+            sb.append(String.format("%n%-6s requests=%d p50=%.1fms p99=%.1fms p999=%.1fms in-flight=%d bytes=%d (%.1f MB/s) "
+                    + "total errors=%d retries=%d throttled=%d",
+                    entry.getKey().getDisplayName(), interval.getCount(),
+                    interval.getValueAtQuantile(0.5) / 1000.0, interval.getValueAtQuantile(0.99) / 1000.0, interval.getValueAtQuantile(0.999) / 1000.0,
+                    metrics.getInFlightCount(), intervalBytes, intervalBytes / 1048576.0 / Math.max(1, intervalMillis) * 1000,
+                    metrics.getErrorCount(), metrics.getRetryCount(), metrics.getThrottledCount()));
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+}
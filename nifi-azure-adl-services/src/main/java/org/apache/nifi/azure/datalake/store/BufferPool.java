@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of equally sized transfer buffers. Buffers are allocated on
+ * first use, up to the pool size, and then reused for the life of the pool.
+ *
+ * When every buffer is in use, a borrower waits for one to be returned. If
+ * none is returned within the wait time it gets a smaller temporary buffer
+ * instead, which is dropped when it is returned, so a burst of transfers is
+ * slowed down rather than failed and does not allocate a full-size buffer
+ * each. Borrowers must therefore go by the length of the buffer they get.
+ */
+class BufferPool {
+
+    static final int DEFAULT_FALLBACK_BUFFER_SIZE = 64 * 1024;
+
+    private final int bufferSize;
+    private final int fallbackBufferSize;
+    private final int maxBuffers;
+    private final long maxWaitNanos;
+
+    private final ArrayDeque<byte[]> free = new ArrayDeque<>();
+    // Compared by identity so a temporary buffer is never mistaken for a pooled one
+    private final Set<byte[]> pooled = Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>());
+
+    private final AtomicLong allocationCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    BufferPool(final int bufferSize, final int maxBuffers, final long maxWaitMillis) {
+        this(bufferSize, maxBuffers, maxWaitMillis, DEFAULT_FALLBACK_BUFFER_SIZE);
+    }
+
+    BufferPool(final int bufferSize, final int maxBuffers, final long maxWaitMillis, final int fallbackBufferSize) {
+        this.bufferSize = bufferSize;
+        this.fallbackBufferSize = Math.min(bufferSize, fallbackBufferSize);
+        this.maxBuffers = maxBuffers;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * @return a buffer of the pool's buffer size, or a smaller temporary one if the pool stayed exhausted for the whole wait time,
+     * to be handed back to {@link #release(byte[])}
+     * @throws InterruptedIOException if interrupted while waiting for a buffer
+     */
+    byte[] acquire() throws InterruptedIOException {
+        synchronized (this) {
+            if (!free.isEmpty()) {
+                return free.pop();
+            }
+            if (pooled.size() < maxBuffers) {
+                final byte[] buffer = new byte[bufferSize];
+                pooled.add(buffer);
+                allocationCount.incrementAndGet();
+                return buffer;
+            }
+
+            final long start = System.nanoTime();
+            try {
+                long remaining = maxWaitNanos;
+                while (free.isEmpty() && remaining > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    remaining = maxWaitNanos - (System.nanoTime() - start);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a transfer buffer");
+            } finally {
+                waitNanos.addAndGet(System.nanoTime() - start);
+            }
+            if (!free.isEmpty()) {
+                return free.pop();
+            }
+        }
+
+        fallbackCount.incrementAndGet();
+        allocationCount.incrementAndGet();
+        return new byte[fallbackBufferSize];
+    }
+
+    synchronized void release(final byte[] buffer) {
+        if (buffer != null && pooled.contains(buffer)) {
+            free.push(buffer);
+            notify();
+        }
+    }
+
+    /**
+     * @return the number of buffers allocated, pooled and temporary
+     */
+    long getAllocationCount() {
+        return allocationCount.get();
+    }
+
+    /**
+     * @return the number of times a borrower gave up waiting and got a smaller temporary buffer; if this keeps growing the pool is
+     * too small
+     */
+    long getFallbackCount() {
+        return fallbackCount.get();
+    }
+
+    long getWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    synchronized int getInUseCount() {
+        return pooled.size() - free.size();
+    }
+}
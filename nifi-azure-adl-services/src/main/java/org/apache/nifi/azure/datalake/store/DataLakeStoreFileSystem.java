@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+import com.microsoft.azure.CloudException;
+import com.microsoft.azure.management.datalake.store.models.FileStatusProperties;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The raw file system requests the service is built on, one call per
+ * request with no retries, limits or caching. Failures are reported the way
+ * the Data Lake Store SDK reports them: a CloudException carrying the HTTP
+ * response for errors returned by the service, an IOException for transport
+ * errors.
+ */
+interface DataLakeStoreFileSystem {
+
+    List<FileStatusProperties> listFileStatus(String account, String directoryPath) throws IOException, CloudException;
+
+    FileStatusProperties getFileStatus(String account, String path) throws IOException, CloudException;
+
+    void create(String account, String path) throws IOException, CloudException;
+
+    void create(String account, String path, byte[] contents, boolean overwrite) throws IOException, CloudException;
+
+    void append(String account, String path, byte[] contents) throws IOException, CloudException;
+
+    InputStream open(String account, String path) throws IOException, CloudException;
+
+    void concat(String account, String destinationPath, List<String> sourcePaths) throws IOException, CloudException;
+
+    void delete(String account, String path) throws IOException, CloudException;
+
+    /**
+     * @return false if the source does not exist, the destination already exists or its parent directory does not exist
+     */
+    boolean rename(String account, String sourcePath, String destinationPath) throws IOException, CloudException;
+
+    /**
+     * Creates the directory and any missing parents. Succeeds if the directory already exists.
+     */
+    void mkdirs(String account, String path) throws IOException, CloudException;
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.SeeAlso;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.controller.ConfigurationContext;
+import org.apache.nifi.processor.DataUnit;
+import org.apache.nifi.processor.util.StandardValidators;
+
+@Tags({"Azure", "Data Lake Store", "local", "test", "benchmark", "file"})
+@CapabilityDescription("A stand-in for the Azure Data Lake Store file system service that stores files in a local directory, for testing and "
+        + "benchmarking flows without an Azure account. Each account is a subdirectory of the root directory. Retries, limits, caching and "
+        + "metrics work as in the real service, and the directory can be made to behave like a loaded account with simulated latency, "
+        + "bandwidth, throttling and transient errors")
+@SeeAlso(AzureDataLakeStoreFileSystemService.class)
+public class LocalAzureDataLakeStoreFileSystemService extends AzureDataLakeStoreFileSystemService {
+
+    public static final PropertyDescriptor ROOT_DIRECTORY = new PropertyDescriptor.Builder()
+            .name("Root Directory")
+            .description("The local directory that holds the files. It is created if it does not exist")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor SIMULATED_LATENCY = new PropertyDescriptor.Builder()
+            .name("Simulated Latency")
+            .description("How long every request is delayed before it is served")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .defaultValue("0 millis")
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor SIMULATED_BANDWIDTH = new PropertyDescriptor.Builder()
+            .name("Simulated Bandwidth")
+            .description("The data rate of each upload and download, e.g. 50 MB. If not set, transfers run at local disk speed")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .required(false)
+            .build();
+
+    public static final PropertyDescriptor SIMULATED_REQUEST_CAPACITY = new PropertyDescriptor.Builder()
+            .name("Simulated Request Capacity")
+            .description("The number of requests per account that may be in flight at once. Further requests are rejected as throttled "
+                    + "with status 429, as an account over its limits would. If not set, requests are never throttled")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(false)
+            .build();
+
+    public static final PropertyDescriptor SIMULATED_ERROR_PERCENTAGE = new PropertyDescriptor.Builder()
+            .name("Simulated Error Percentage")
+            .description("The percentage of requests, from 0 to 100, that fail with a transient server error (status 503)")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .defaultValue("0")
+            .required(true)
+            .build();
+
+    private static final List<PropertyDescriptor> localServiceProperties;
+
+    static {
+        final List<PropertyDescriptor> props = new ArrayList<>();
+        props.add(ROOT_DIRECTORY);
+        props.add(ACCOUNT_NAME);
+        props.add(ADDITIONAL_ACCOUNT_NAMES);
+        props.add(ACCOUNT_PREFIX_RULES);
+        props.add(SIMULATED_LATENCY);
+        props.add(SIMULATED_BANDWIDTH);
+        props.add(SIMULATED_REQUEST_CAPACITY);
+        props.add(SIMULATED_ERROR_PERCENTAGE);
+        props.add(MAX_RETRIES);
+        props.add(RETRY_INITIAL_BACKOFF);
+        props.add(RETRY_MAX_BACKOFF);
+        props.add(MAX_CONCURRENT_REQUESTS);
+        props.add(IO_THREADS);
+        props.add(METADATA_CACHE_TTL);
+        props.add(METADATA_CACHE_SIZE);
+        props.add(MAX_BYTES_PER_SECOND);
+        props.add(MAX_REQUESTS_PER_SECOND);
+        props.add(TRANSFER_BUFFER_SIZE);
+        props.add(TRANSFER_BUFFER_POOL_SIZE);
+        props.add(TRANSFER_BUFFER_WAIT_TIME);
+        props.add(METRICS_REPORTING_INTERVAL);
+        localServiceProperties = Collections.unmodifiableList(props);
+    }
+
+    @Override
+    public List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return localServiceProperties;
+    }
+
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        final Collection<ValidationResult> results = new ArrayList<>(super.customValidate(context));
+        final Integer errorPercentage = context.getProperty(SIMULATED_ERROR_PERCENTAGE).asInteger();
+        if (errorPercentage != null && errorPercentage > 100) {
+            results.add(new ValidationResult.Builder().subject(SIMULATED_ERROR_PERCENTAGE.getName()).input(errorPercentage.toString())
+                    .valid(false).explanation("must be between 0 and 100").build());
+        }
+        return results;
+    }
+
+    @Override
+    protected DataLakeStoreFileSystem createFileSystem(final ConfigurationContext context) {
+        final File root = new File(context.getProperty(ROOT_DIRECTORY).getValue());
+        if (!root.isDirectory() && !root.mkdirs()) {
+            throw new IllegalStateException("Could not create root directory " + root);
+        }
+
+        return new LocalDataLakeStoreFileSystem(root,
+                context.getProperty(SIMULATED_LATENCY).asTimePeriod(TimeUnit.MILLISECONDS),
+                context.getProperty(SIMULATED_BANDWIDTH).isSet() ? context.getProperty(SIMULATED_BANDWIDTH).asDataSize(DataUnit.B).longValue() : 0,
+                context.getProperty(SIMULATED_REQUEST_CAPACITY).isSet() ? context.getProperty(SIMULATED_REQUEST_CAPACITY).asInteger() : 0,
+                context.getProperty(SIMULATED_ERROR_PERCENTAGE).asInteger());
+    }
+}
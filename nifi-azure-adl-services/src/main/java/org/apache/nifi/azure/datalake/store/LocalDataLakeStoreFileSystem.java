@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.CloudException;
+import com.microsoft.azure.management.datalake.store.models.FileStatusProperties;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+
+/**
+ * Serves file system requests from a local directory, with the semantics of
+ * Data Lake Store: each account is a subdirectory of the root, parent
+ * directories are created implicitly except by renames, concatenation
+ * consumes its sources, and errors are CloudExceptions with the status code
+ * the service would return.
+ *
+ * It can also behave like a loaded account: every request can be delayed by
+ * a fixed latency, uploads and downloads can be capped to a bandwidth per
+ * request,
+ * requests beyond a concurrency capacity are throttled with 429, and a
+ * fraction of requests can fail with 503.
+ */
+class LocalDataLakeStoreFileSystem implements DataLakeStoreFileSystem {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    private final Path root;
+    private final long latencyMillis;
+    private final long bytesPerSecond;
+    private final int requestCapacity;
+    private final int errorPercentage;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param bytesPerSecond the bandwidth of each upload or download, or 0 for unlimited
+     * @param requestCapacity the number of requests that may be in flight before further ones are throttled, or 0 for unlimited
+     * @param errorPercentage the percentage of requests that fail with a transient server error
+     */
+    LocalDataLakeStoreFileSystem(final File root, final long latencyMillis, final long bytesPerSecond, final int requestCapacity, final int errorPercentage) {
+        this.root = root.toPath().toAbsolutePath().normalize();
+        this.latencyMillis = latencyMillis;
+        this.bytesPerSecond = bytesPerSecond;
+        this.requestCapacity = requestCapacity;
+        this.errorPercentage = errorPercentage;
+    }
+
+    @Override
+    public List<FileStatusProperties> listFileStatus(final String account, final String directoryPath) throws IOException, CloudException {
+        beginRequest();
+        try {
+            final Path directory = resolve(account, directoryPath);
+            if (!Files.isDirectory(directory)) {
+                throw error(404, "FileNotFoundException", "Directory " + directoryPath + " does not exist");
+            }
+
+            final List<FileStatusProperties> statuses = new ArrayList<>();
+            try (final DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (final Path entry : entries) {
+                    statuses.add(toStatus(entry));
+                }
+            }
+            return statuses;
+        } finally {
+            endRequest();
+        }
+    }
+
+    @Override
+    public FileStatusProperties getFileStatus(final String account, final String path) throws IOException, CloudException {
+        beginRequest();
+        try {
+            final Path file = resolve(account, path);
+            if (!Files.exists(file)) {
+                throw error(404, "FileNotFoundException", "File " + path + " does not exist");
+            }
+            return toStatus(file);
+        } finally {
+            endRequest();
+        }
+    }
+
+    @Override
+    public void create(final String account, final String path) throws IOException, CloudException {
+        create(account, path, new byte[0], false);
+    }
+
+    @Override
+    public void create(final String account, final String path, final byte[] contents, final boolean overwrite) throws IOException, CloudException {
+        beginRequest();
+        try {
+            final Path file = resolve(account, path);
+            Files.createDirectories(file.getParent());
+            if (Files.isDirectory(file)) {
+                throw error(403, "AccessDeniedException", path + " is a directory");
+            }
+            simulateUpload(contents.length);
+            try {
+                if (overwrite) {
+                    Files.write(file, contents);
+                } else {
+                    Files.write(file, contents, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                }
+            } catch (final FileAlreadyExistsException e) {
+                throw error(403, "FileAlreadyExistsException", "File " + path + " already exists");
+            }
+        } finally {
+            endRequest();
+        }
+    }
+
+    @Override
+    public void append(final String account, final String path, final byte[] contents) throws IOException, CloudException {
+        beginRequest();
+        try {
+            final Path file = resolve(account, path);
+            if (!Files.isRegularFile(file)) {
+                throw error(404, "FileNotFoundException", "File " + path + " does not exist");
+            }
+            simulateUpload(contents.length);
+            Files.write(file, contents, StandardOpenOption.APPEND);
+        } finally {
+            endRequest();
+        }
+    }
+
+    @Override
+    public InputStream open(final String account, final String path) throws IOException, CloudException {
+        beginRequest();
+        try {
+            final Path file = resolve(account, path);
+            if (!Files.isRegularFile(file)) {
+                throw error(404, "FileNotFoundException", "File " + path + " does not exist");
+            }
+            final InputStream in = new FileInputStream(file.toFile());
+            return bytesPerSecond > 0 ? new BandwidthLimitedInputStream(in, bytesPerSecond) : in;
+        } finally {
+            endRequest();
+        }
+    }
+
+    @Override
+    public void concat(final String account, final String destinationPath, final List<String> sourcePaths) throws IOException, CloudException {
+        beginRequest();
+        try {
+            final Path destination = resolve(account, destinationPath);
+            if (Files.exists(destination)) {
+                throw error(403, "FileAlreadyExistsException", "File " + destinationPath + " already exists");
+            }
+            final List<Path> sources = new ArrayList<>();
+            for (final String sourcePath : sourcePaths) {
+                final Path source = resolve(account, sourcePath);
+                if (!Files.isRegularFile(source)) {
+                    throw error(404, "FileNotFoundException", "File " + sourcePath + " does not exist");
+                }
+                sources.add(source);
+            }
+
+            // Build the result next to the destination and move it into place, so the destination never appears half written
+            Files.createDirectories(destination.getParent());
+            final Path staging = destination.resolveSibling("." + destination.getFileName() + "." + UUID.randomUUID() + ".concat");
+            try (final OutputStream out = new FileOutputStream(staging.toFile())) {
+                for (final Path source : sources) {
+                    Files.copy(source, out);
+                }
+            }
+            try {
+                Files.move(staging, destination, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(staging, destination);
+            }
+            for (final Path source : sources) {
+                Files.deleteIfExists(source);
+            }
+        } finally {
+            endRequest();
+        }
+    }
+
+    @Override
+    public void delete(final String account, final String path) throws IOException, CloudException {
+        beginRequest();
+        try {
+            Files.deleteIfExists(resolve(account, path));
+        } catch (final DirectoryNotEmptyException e) {
+            throw error(403, "AccessDeniedException", "Directory " + path + " is not empty");
+        } finally {
+            endRequest();
+        }
+    }
+
+    @Override
+    public boolean rename(final String account, final String sourcePath, final String destinationPath) throws IOException, CloudException {
+        beginRequest();
+        try {
+            final Path source = resolve(account, sourcePath);
+            final Path destination = resolve(account, destinationPath);
+            if (!Files.exists(source) || Files.exists(destination) || !Files.isDirectory(destination.getParent())) {
+                return false;
+            }
+            try {
+                Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(source, destination);
+            }
+            return true;
+        } finally {
+            endRequest();
+        }
+    }
+
+    @Override
+    public void mkdirs(final String account, final String path) throws IOException, CloudException {
+        beginRequest();
+        try {
+            Files.createDirectories(resolve(account, path));
+        } catch (final FileAlreadyExistsException e) {
+            throw error(403, "FileAlreadyExistsException", path + " is a file");
+        } finally {
+            endRequest();
+        }
+    }
+
+    private Path resolve(final String account, final String path) throws CloudException {
+        final Path accountRoot = root.resolve(account);
+        final String relative = path.startsWith("/") ? path.substring(1) : path;
+        final Path resolved = accountRoot.resolve(relative).normalize();
+        if (!resolved.startsWith(accountRoot)) {
+            throw error(400, "IllegalArgumentException", "Path " + path + " is outside of the account");
+        }
+        return resolved;
+    }
+
+    private void beginRequest() throws IOException, CloudException {
+        final int current = inFlight.incrementAndGet();
+        if (requestCapacity > 0 && current > requestCapacity) {
+            inFlight.decrementAndGet();
+            throw error(429, "ThrottledException", "The account is over its request capacity of " + requestCapacity);
+        }
+        if (errorPercentage > 0 && ThreadLocalRandom.current().nextInt(100) < errorPercentage) {
+            inFlight.decrementAndGet();
+            throw error(503, "ServiceUnavailableException", "Simulated transient failure");
+        }
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (final InterruptedException e) {
+                inFlight.decrementAndGet();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted during simulated latency");
+            }
+        }
+    }
+
+    private void simulateUpload(final long bytes) throws IOException {
+        if (bytesPerSecond <= 0 || bytes == 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep((long) (bytes * (double) TimeUnit.SECONDS.toNanos(1) / bytesPerSecond));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during simulated upload");
+        }
+    }
+
+    private void endRequest() {
+        inFlight.decrementAndGet();
+    }
+
+    private static FileStatusProperties toStatus(final Path path) throws IOException {
+        final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("pathSuffix", path.getFileName().toString());
+        properties.put("type", attributes.isDirectory() ? "DIRECTORY" : "FILE");
+        properties.put("length", attributes.isDirectory() ? 0L : attributes.size());
+        properties.put("blockSize", 268435456L);
+        properties.put("childrenNum", 0L);
+        properties.put("accessTime", attributes.lastAccessTime().toMillis());
+        properties.put("modificationTime", attributes.lastModifiedTime().toMillis());
+        properties.put("owner", "local");
+        properties.put("group", "local");
+        properties.put("permission", attributes.isDirectory() ? "755" : "644");
+        // The SDK model only has getters; it is populated from JSON like a real response
+        return MAPPER.convertValue(properties, FileStatusProperties.class);
+    }
+
+    private static CloudException error(final int status, final String exception, final String message) {
+        final String body = "{\"RemoteException\":{\"exception\":\"" + exception + "\",\"message\":\"" + message.replace("\"", "'") + "\"}}";
+        final CloudException e = new CloudException(message);
+        e.setResponse(Response.<ResponseBody>error(status, ResponseBody.create(JSON, body)));
+        return e;
+    }
+
+    /**
+     * Paces reads so that a stream delivers at most the configured number of bytes per second.
+     */
+    private static class BandwidthLimitedInputStream extends FilterInputStream {
+
+        private final long bytesPerSecond;
+        private final long startNanos = System.nanoTime();
+        private long bytesRead;
+
+        private BandwidthLimitedInputStream(final InputStream in, final long bytesPerSecond) {
+            super(in);
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0) {
+                pace(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int count = super.read(b, off, len);
+            if (count > 0) {
+                pace(count);
+            }
+            return count;
+        }
+
+        private void pace(final int count) throws IOException {
+            bytesRead += count;
+            final long dueNanos = startNanos + (long) (bytesRead * (double) TimeUnit.SECONDS.toNanos(1) / bytesPerSecond);
+            final long aheadNanos = dueNanos - System.nanoTime();
+            if (aheadNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(aheadNanos);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while pacing simulated bandwidth");
+                }
+            }
+        }
+    }
+}
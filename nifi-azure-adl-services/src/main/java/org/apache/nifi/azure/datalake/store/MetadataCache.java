@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, least-recently-used cache of path metadata whose entries expire
+ * after a fixed time.
+ *
+ * A lookup that misses should call {@link #getGeneration()} before sending its
+ * request and pass the value to {@link #put(String, Object, long)}. If that
+ * path, or a tree containing it, was invalidated in the meantime the result is
+ * not stored, because it may predate the change that caused the invalidation.
+ * Invalidating other paths does not affect it. The most recent invalidations
+ * are remembered per path, up to the cache size; once older ones are
+ * forgotten, results loaded before them are not stored at all.
+ *
+ * @param <V> the cached value type
+ */
+class MetadataCache<V> {
+
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry<V>> entries;
+    private final LinkedHashMap<String, Long> invalidations;
+    private final LinkedHashMap<String, Long> treeInvalidations;
+    private long generation;
+    private long forgottenGeneration;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    MetadataCache(final long ttlMillis, final int maxEntries) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.invalidations = newInvalidationMap(maxEntries);
+        this.treeInvalidations = newInvalidationMap(maxEntries);
+    }
+
+    private LinkedHashMap<String, Long> newInvalidationMap(final int maxEntries) {
+        // In insertion order, which is also generation order because each path is removed before it is added again
+        return new LinkedHashMap<String, Long>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Long> eldest) {
+                if (size() > maxEntries) {
+                    forgottenGeneration = Math.max(forgottenGeneration, eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    synchronized V get(final String path) {
+        final Entry<V> entry = entries.get(path);
+        if (entry == null || System.nanoTime() - entry.loadedNanos > ttlNanos) {
+            if (entry != null) {
+                entries.remove(path);
+            }
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.value;
+    }
+
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    synchronized void put(final String path, final V value, final long loadedGeneration) {
+        if (value != null && !invalidatedSince(path, loadedGeneration)) {
+            entries.put(path, new Entry<>(value));
+        }
+    }
+
+    private boolean invalidatedSince(final String path, final long loadedGeneration) {
+        if (forgottenGeneration > loadedGeneration || isNewer(invalidations.get(path), loadedGeneration)) {
+            return true;
+        }
+        String ancestor = trimTrailingSlash(path);
+        while (true) {
+            if (isNewer(treeInvalidations.get(ancestor), loadedGeneration)) {
+                return true;
+            }
+            final int slash = ancestor.lastIndexOf('/');
+            if (slash < 0 || ancestor.equals("/")) {
+                return false;
+            }
+            ancestor = slash == 0 ? "/" : ancestor.substring(0, slash);
+        }
+    }
+
+    private static boolean isNewer(final Long invalidatedGeneration, final long loadedGeneration) {
+        return invalidatedGeneration != null && invalidatedGeneration > loadedGeneration;
+    }
+
+    private static String trimTrailingSlash(final String path) {
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    private void record(final LinkedHashMap<String, Long> records, final String path) {
+        generation++;
+        records.remove(path);
+        records.put(path, generation);
+    }
+
+    synchronized void invalidate(final String path) {
+        record(invalidations, path);
+        entries.remove(path);
+    }
+
+    /**
+     * Removes the path and everything below it.
+     */
+    synchronized void invalidateTree(final String path) {
+        record(treeInvalidations, trimTrailingSlash(path));
+        final String prefix = path.endsWith("/") ? path : path + "/";
+        final Iterator<String> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            if (key.equals(path) || key.startsWith(prefix)) {
+                keys.remove();
+            }
+        }
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long loadedNanos;
+
+        private Entry(final V value) {
+            this.value = value;
+            this.loadedNanos = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and latency distribution for one kind of request.
+ *
+ * Latency runs from the first attempt to the final outcome, so it includes
+ * time spent waiting for rate limits and backing off between retries. For
+ * downloads it ends when the stream is opened, before the content is read.
+ */
+class OperationMetrics implements OperationMetricsMXBean {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong inFlightCount = new AtomicLong();
+    private final AtomicLong bytesTransferred = new AtomicLong();
+
+    void requestStarted() {
+        inFlightCount.incrementAndGet();
+    }
+
+    void requestCompleted(final long nanos, final boolean failed) {
+        inFlightCount.decrementAndGet();
+        requestCount.incrementAndGet();
+        if (failed) {
+            errorCount.incrementAndGet();
+        }
+        latency.record(nanos);
+    }
+
+    void retried() {
+        retryCount.incrementAndGet();
+    }
+
+    void throttled() {
+        throttledCount.incrementAndGet();
+    }
+
+    void bytesTransferred(final long bytes) {
+        bytesTransferred.addAndGet(bytes);
+    }
+
+    LatencyHistogram.Snapshot latencySnapshot() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    @Override
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    @Override
+    public long getInFlightCount() {
+        return inFlightCount.get();
+    }
+
+    @Override
+    public long getBytesTransferred() {
+        return bytesTransferred.get();
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return latency.snapshot().getValueAtQuantile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return latency.snapshot().getValueAtQuantile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP999Millis() {
+        return latency.snapshot().getValueAtQuantile(0.999) / 1000.0;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import com.microsoft.azure.credentials.ApplicationTokenCredentials;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Application token credentials that hand out a cached access token and
+ * refresh it on a schedule instead of on the request path.
+ *
+ * Only one thread acquires a token at a time. Requests never wait for a
+ * refresh once a token has been cached; they keep using the previous token
+ * until the new one is in place.
+ */
+class RefreshingApplicationTokenCredentials extends ApplicationTokenCredentials {
+
+    // A 401 triggers refreshToken() from every request that received it. If a
+    // refresh completed this recently, those callers reuse its result.
+    private static final long REFRESH_COALESCE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile String cachedToken;
+    private volatile long lastRefreshNanos;
+
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong refreshFailureCount = new AtomicLong();
+    private volatile long lastRefreshDurationMillis = -1;
+
+    RefreshingApplicationTokenCredentials(String clientId, String domain, String secret) {
+        super(clientId, domain, secret, null);
+    }
+
+    @Override
+    public String getToken() throws IOException {
+        final String token = cachedToken;
+        if (token != null) {
+            return token;
+        }
+
+        // No token yet: the first caller acquires it, everyone else waits for that result.
+        refreshLock.lock();
+        try {
+            if (cachedToken == null) {
+                acquire();
+            }
+            return cachedToken;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    @Override
+    public void refreshToken() throws IOException {
+        final long requestedAt = System.nanoTime();
+        refreshLock.lock();
+        try {
+            if (cachedToken != null && requestedAt - lastRefreshNanos < REFRESH_COALESCE_NANOS) {
+                return;
+            }
+            acquire();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Acquires a new token unless another thread is already doing so. Used by
+     * the background refresh so it never queues behind a request-path refresh.
+     *
+     * @return true if a token was acquired by this call
+     * @throws IOException if the token could not be acquired
+     */
+    boolean refreshIfIdle() throws IOException {
+        if (!refreshLock.tryLock()) {
+            return false;
+        }
+        try {
+            acquire();
+            return true;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    // Must be called with refreshLock held
+    private void acquire() throws IOException {
+        final long start = System.nanoTime();
+        try {
+            cachedToken = requestToken();
+            refreshCount.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            refreshFailureCount.incrementAndGet();
+            throw e;
+        } finally {
+            lastRefreshNanos = System.nanoTime();
+            lastRefreshDurationMillis = TimeUnit.NANOSECONDS.toMillis(lastRefreshNanos - start);
+        }
+    }
+
+    /**
+     * Requests a new token from Azure Active Directory. Must be called with refreshLock held.
+     */
+    String requestToken() throws IOException {
+        super.refreshToken();
+        return super.getToken();
+    }
+
+    long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    long getRefreshFailureCount() {
+        return refreshFailureCount.get();
+    }
+
+    long getLastRefreshDurationMillis() {
+        return lastRefreshDurationMillis;
+    }
+}
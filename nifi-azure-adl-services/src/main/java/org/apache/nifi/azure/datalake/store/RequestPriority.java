@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+/**
+ * Priority classes for sharing the service's rate limits. When requests are
+ * waiting for bandwidth or request rate, each class is served in proportion to
+ * its weight. A class with no waiting requests leaves its share to the others.
+ *
+ * The priority is bound to the calling thread: a processor sets it at the
+ * start of onTrigger and every request it issues on that thread is accounted
+ * to that class. Asynchronous requests capture it when they are submitted.
+ * Framework threads are shared with other processors, so the processor must
+ * clear it in a finally block before onTrigger returns.
+ */
+public enum RequestPriority {
+
+    HIGH(4),
+    NORMAL(2),
+    LOW(1);
+
+    private static final ThreadLocal<RequestPriority> CURRENT = new ThreadLocal<RequestPriority>() {
+        @Override
+        protected RequestPriority initialValue() {
+            return NORMAL;
+        }
+    };
+
+    private final int weight;
+
+    RequestPriority(final int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public static RequestPriority current() {
+        return CURRENT.get();
+    }
+
+    public static void setCurrent(final RequestPriority priority) {
+        CURRENT.set(priority == null ? NORMAL : priority);
+    }
+
+    /**
+     * Restores the default priority for requests issued on the calling thread.
+     */
+    public static void clearCurrent() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import com.microsoft.azure.CloudException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which failures are worth retrying and how long to wait before the
+ * next attempt. Delays grow exponentially and use full jitter, so clients
+ * that were throttled together do not retry together.
+ */
+class RetryPolicy {
+
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    RetryPolicy(final int maxRetries, final long initialBackoffMillis, final long maxBackoffMillis) {
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param attempt the zero-based number of the attempt that just failed
+     * @param retryAfterMillis the delay requested by the server, or -1 if none
+     * @return how long to wait before the next attempt
+     */
+    long getBackoffMillis(final int attempt, final long retryAfterMillis) {
+        final long ceiling = initialBackoffMillis << Math.min(attempt, 30);
+        final long capped = Math.min(maxBackoffMillis, ceiling < 0 ? maxBackoffMillis : ceiling);
+        final long jittered = ThreadLocalRandom.current().nextLong(capped + 1);
+        return Math.max(jittered, Math.min(retryAfterMillis, maxBackoffMillis));
+    }
+
+    static int getStatusCode(final CloudException e) {
+        return e.getResponse() == null ? -1 : e.getResponse().code();
+    }
+
+    /**
+     * The server rejects a throttled request without applying it, so a
+     * throttled request is safe to retry for every operation, including ones
+     * that are not idempotent.
+     *
+     * @return true if the server rejected the request because the account is over its limits
+     */
+    static boolean isThrottled(final CloudException e) {
+        final int status = getStatusCode(e);
+        return status == 429 || status == 503;
+    }
+
+    /**
+     * Throttling and transient server errors. After a timeout or a server
+     * error the request may still have been applied, so only idempotent
+     * operations may be retried on these; others only on {@link #isThrottled(CloudException)}.
+     */
+    static boolean isRetryable(final CloudException e) {
+        final int status = getStatusCode(e);
+        return status == 408 || status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    static long getRetryAfterMillis(final CloudException e) {
+        if (e.getResponse() == null) {
+            return -1;
+        }
+        final String retryAfter = e.getResponse().headers().get("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+        } catch (final NumberFormatException nfe) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+import com.microsoft.azure.CloudException;
+import com.microsoft.azure.management.datalake.store.DataLakeStoreFileSystemManagementClient;
+import com.microsoft.azure.management.datalake.store.models.FileStatusProperties;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Sends the file system requests to Azure Data Lake Store through the SDK client.
+ */
+class SdkDataLakeStoreFileSystem implements DataLakeStoreFileSystem {
+
+    private final DataLakeStoreFileSystemManagementClient client;
+
+    SdkDataLakeStoreFileSystem(final DataLakeStoreFileSystemManagementClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public List<FileStatusProperties> listFileStatus(final String account, final String directoryPath) throws IOException, CloudException {
+        return client.getFileSystemOperations().listFileStatus(account, directoryPath).getBody().getFileStatuses().getFileStatus();
+    }
+
+    @Override
+    public FileStatusProperties getFileStatus(final String account, final String path) throws IOException, CloudException {
+        return client.getFileSystemOperations().getFileStatus(account, path).getBody().getFileStatus();
+    }
+
+    @Override
+    public void create(final String account, final String path) throws IOException, CloudException {
+        client.getFileSystemOperations().create(account, path);
+    }
+
+    @Override
+    public void create(final String account, final String path, final byte[] contents, final boolean overwrite) throws IOException, CloudException {
+        client.getFileSystemOperations().create(account, path, contents, overwrite);
+    }
+
+    @Override
+    public void append(final String account, final String path, final byte[] contents) throws IOException, CloudException {
+        client.getFileSystemOperations().append(account, path, contents);
+    }
+
+    @Override
+    public InputStream open(final String account, final String path) throws IOException, CloudException {
+        return client.getFileSystemOperations().open(account, path).getBody();
+    }
+
+    @Override
+    public void concat(final String account, final String destinationPath, final List<String> sourcePaths) throws IOException, CloudException {
+        client.getFileSystemOperations().concat(account, destinationPath, sourcePaths);
+    }
+
+    @Override
+    public void delete(final String account, final String path) throws IOException, CloudException {
+        client.getFileSystemOperations().delete(account, path);
+    }
+
+    @Override
+    public boolean rename(final String account, final String sourcePath, final String destinationPath) throws IOException, CloudException {
+        return Boolean.TRUE.equals(client.getFileSystemOperations().rename(account, sourcePath, destinationPath).getBody().getOperationResult());
+    }
+
+    @Override
+    public void mkdirs(final String account, final String path) throws IOException, CloudException {
+        if (!Boolean.TRUE.equals(client.getFileSystemOperations().mkdirs(account, path).getBody().getOperationResult())) {
+            throw new CloudException("Could not create directory " + path);
+        }
+    }
+}
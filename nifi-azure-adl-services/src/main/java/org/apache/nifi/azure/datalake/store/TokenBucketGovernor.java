@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket that refills at a fixed rate and holds at most one second's
+ * worth of tokens. Waiting callers are served in weighted fair order: each
+ * request gets a virtual finish time of start + permits / weight, and the
+ * request with the earliest finish time goes next.
+ *
+ * A request larger than the bucket is let through once the bucket is full
+ * and leaves it in debt, so later requests wait until the debt is repaid.
+ */
+class TokenBucketGovernor {
+
+    private static final long MIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+    private final double[] lastFinish = new double[RequestPriority.values().length];
+    private double virtualTime;
+    private long sequence;
+
+    TokenBucketGovernor(final long tokensPerSecond) {
+        this.tokensPerNano = tokensPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+        this.capacity = tokensPerSecond;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    synchronized void acquire(final long permits, final RequestPriority priority) throws InterruptedException {
+        if (permits <= 0) {
+            return;
+        }
+
+        final int index = priority.ordinal();
+        final double start = Math.max(virtualTime, lastFinish[index]);
+        final Waiter waiter = new Waiter(start, start + permits / (double) priority.getWeight(), sequence++);
+        lastFinish[index] = waiter.finish;
+        waiters.add(waiter);
+
+        final double needed = Math.min(permits, capacity);
+        try {
+            while (true) {
+                refill();
+                if (waiters.peek() == waiter) {
+                    if (tokens >= needed) {
+                        waiters.poll();
+                        tokens -= permits;
+                        virtualTime = waiter.start;
+                        notifyAll();
+                        return;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, Math.max(MIN_WAIT_NANOS, (long) ((needed - tokens) / tokensPerNano)));
+                } else {
+                    wait();
+                }
+            }
+        } catch (final InterruptedException e) {
+            waiters.remove(waiter);
+            notifyAll();
+            throw e;
+        }
+    }
+
+    private void refill() {
+        final long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+
+    private static class Waiter implements Comparable<Waiter> {
+
+        private final double start;
+        private final double finish;
+        private final long sequence;
+
+        private Waiter(final double start, final double finish, final long sequence) {
+            this.start = start;
+            this.finish = finish;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final Waiter other) {
+            final int byFinish = Double.compare(finish, other.finish);
+            return byFinish != 0 ? byFinish : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Wraps the content stream of a downloaded file to record the bytes read and,
+ * if the service has a bandwidth limit, to charge them against it. Each read
+ * is charged after it returns, so a reader that outpaces the limit is held
+ * back on its next read.
+ */
+class TransferInputStream extends FilterInputStream {
+
+    private final OperationMetrics metrics;
+    private final TokenBucketGovernor governor;
+    private final RequestPriority priority;
+
+    /**
+     * @param governor the bandwidth limit, or null if there is none
+     */
+    TransferInputStream(final InputStream in, final OperationMetrics metrics, final TokenBucketGovernor governor, final RequestPriority priority) {
+        super(in);
+        this.metrics = metrics;
+        this.governor = governor;
+        this.priority = priority;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+        if (b >= 0) {
+            charge(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int count = super.read(b, off, len);
+        charge(count);
+        return count;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skipped = super.skip(n);
+        charge(skipped);
+        return skipped;
+    }
+
+    private void charge(final long bytes) throws IOException {
+        if (bytes <= 0) {
+            return;
+        }
+        metrics.bytesTransferred(bytes);
+        if (governor == null) {
+            return;
+        }
+        try {
+            governor.acquire(bytes, priority);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for Azure Data Lake Store bandwidth");
+        }
+    }
+}
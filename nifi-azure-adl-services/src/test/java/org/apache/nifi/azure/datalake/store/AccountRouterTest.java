@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AccountRouterTest {
+
+    private static final List<String> ACCOUNTS = Arrays.asList("first", "second", "third");
+
+    @Test
+    public void testDirectoriesAreBalancedAcrossAccounts() {
+        final AccountRouter router = new AccountRouter(ACCOUNTS, Collections.<String, String>emptyMap());
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 30000; i++) {
+            final String account = router.getAccount("/data/dir-" + i + "/file.csv");
+            counts.put(account, counts.containsKey(account) ? counts.get(account) + 1 : 1);
+        }
+        for (final String account : ACCOUNTS) {
+            final int count = counts.get(account);
+            assertTrue(account + " holds " + count + " of 30000 directories", count > 8000 && count < 12000);
+        }
+    }
+
+    @Test
+    public void testFilesOfADirectoryShareAnAccount() {
+        final AccountRouter router = new AccountRouter(ACCOUNTS, Collections.<String, String>emptyMap());
+        final String account = router.getAccount("/data/day=1/part-00000");
+        for (int i = 1; i < 100; i++) {
+            assertEquals(account, router.getAccount("/data/day=1/part-" + i));
+        }
+    }
+
+    @Test
+    public void testRepeatedFileNamesInPartitionsAreSpread() {
+        final AccountRouter router = new AccountRouter(ACCOUNTS, Collections.<String, String>emptyMap());
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int day = 0; day < 300; day++) {
+            final String account = router.getAccount("/events/day=" + day + "/part-00000");
+            counts.put(account, counts.containsKey(account) ? counts.get(account) + 1 : 1);
+        }
+        assertEquals(3, counts.size());
+        assertEquals(router.getAccount("/events/day=1/part-00000"), router.getAccount("/events/day=1/part-00000/"));
+    }
+
+    @Test
+    public void testAddingAnAccountOnlyMovesItsShare() {
+        final AccountRouter before = new AccountRouter(ACCOUNTS, Collections.<String, String>emptyMap());
+        final AccountRouter after = new AccountRouter(Arrays.asList("first", "second", "third", "fourth"), Collections.<String, String>emptyMap());
+        int moved = 0;
+        for (int i = 0; i < 10000; i++) {
+            final String path = "/data/dir-" + i + "/file";
+            final String account = after.getAccount(path);
+            if (!account.equals(before.getAccount(path))) {
+                assertEquals("fourth", account);
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved + " of 10000 directories", moved > 1500 && moved < 3500);
+    }
+
+    @Test
+    public void testLongestPrefixRuleWins() {
+        final Map<String, String> rules = AccountRouter.parsePrefixRules("/raw=first, /raw/hot=third");
+        final AccountRouter router = new AccountRouter(ACCOUNTS, rules);
+        assertEquals("first", router.getAccount("/raw/2016/a.csv"));
+        assertEquals("third", router.getAccount("/raw/hot/a.csv"));
+        assertEquals("third", router.getAccount("/raw/hot/2016/a.csv"));
+        // A file named like a prefix is placed by its directory
+        assertEquals("first", router.getAccount("/raw/hot"));
+        assertEquals(Collections.singletonList("first"), router.getAccountsForDirectory("/raw/2016"));
+        assertEquals(ACCOUNTS, router.getAccountsForDirectory("/rawdata"));
+    }
+
+    @Test
+    public void testMalformedPrefixRuleIsRejected() {
+        try {
+            AccountRouter.parsePrefixRules("/raw=first,/curated");
+            fail("Expected a malformed rule to be rejected");
+        } catch (final IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("/curated"));
+        }
+        assertTrue(AccountRouter.parsePrefixRules(null).isEmpty());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    public void testInitialLimitIsClamped() {
+        assertEquals(1, new AdaptiveConcurrencyLimiter(0, 8).getLimit());
+        assertEquals(8, new AdaptiveConcurrencyLimiter(20, 8).getLimit());
+    }
+
+    @Test
+    public void testSuccessesIncreaseLimitAdditively() throws InterruptedException {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 4);
+        // 2 -> 2.5 -> 2.9 -> 3.24: about one more per round of requests
+        for (int i = 0; i < 2; i++) {
+            limiter.release(limiter.acquire(), false);
+        }
+        assertEquals(2, limiter.getLimit());
+        limiter.release(limiter.acquire(), false);
+        assertEquals(3, limiter.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            limiter.release(limiter.acquire(), false);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void testBurstOfThrottlesHalvesLimitOnce() throws InterruptedException {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 8);
+        final long first = limiter.acquire();
+        final long second = limiter.acquire();
+        limiter.release(first, true);
+        assertEquals(4, limiter.getLimit());
+        // Issued before the decrease, so it reports the same overload
+        limiter.release(second, true);
+        assertEquals(4, limiter.getLimit());
+
+        throttleAfterLastDecrease(limiter);
+        assertEquals(2, limiter.getLimit());
+        throttleAfterLastDecrease(limiter);
+        throttleAfterLastDecrease(limiter);
+        assertEquals(1, limiter.getLimit());
+    }
+
+    private static void throttleAfterLastDecrease(final AdaptiveConcurrencyLimiter limiter) throws InterruptedException {
+        // Make sure the request is issued strictly after the previous decrease, even with a coarse clock
+        Thread.sleep(1);
+        limiter.release(limiter.acquire(), true);
+    }
+
+    @Test
+    public void testAcquireWaitsAtLimit() throws InterruptedException {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1);
+        final long permit = limiter.acquire();
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    limiter.acquire();
+                    acquired.countDown();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        waiter.start();
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        limiter.release(permit, false);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testReturnedBufferIsReused() throws InterruptedIOException {
+        final BufferPool pool = new BufferPool(16, 2, 0);
+        final byte[] buffer = pool.acquire();
+        assertEquals(16, buffer.length);
+        assertEquals(1, pool.getInUseCount());
+        pool.release(buffer);
+        assertEquals(0, pool.getInUseCount());
+
+        assertSame(buffer, pool.acquire());
+        assertEquals(1, pool.getAllocationCount());
+    }
+
+    @Test
+    public void testSmallerTemporaryBufferWhenExhausted() throws InterruptedIOException {
+        final BufferPool pool = new BufferPool(16, 1, 20, 4);
+        final byte[] pooled = pool.acquire();
+        final long start = System.nanoTime();
+        final byte[] temporary = pool.acquire();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertNotSame(pooled, temporary);
+        assertEquals(4, temporary.length);
+        assertEquals(1, pool.getFallbackCount());
+        assertEquals(2, pool.getAllocationCount());
+        assertEquals(1, pool.getInUseCount());
+
+        // A temporary buffer is dropped rather than added to the pool
+        pool.release(temporary);
+        assertEquals(1, pool.getInUseCount());
+        pool.release(pooled);
+        assertSame(pooled, pool.acquire());
+    }
+
+    @Test
+    public void testWaiterGetsReturnedBuffer() throws InterruptedException, InterruptedIOException {
+        final BufferPool pool = new BufferPool(16, 1, 5000);
+        final byte[] pooled = pool.acquire();
+        final AtomicReference<byte[]> borrowed = new AtomicReference<>();
+        final CountDownLatch acquired = new CountDownLatch(1);
+        final Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    borrowed.set(pool.acquire());
+                    acquired.countDown();
+                } catch (final InterruptedIOException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        waiter.start();
+        Thread.sleep(50);
+        pool.release(pooled);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+
+        assertSame(pooled, borrowed.get());
+        assertEquals(0, pool.getFallbackCount());
+    }
+
+    @Test
+    public void testInterruptWhileWaiting() throws InterruptedIOException {
+        final BufferPool pool = new BufferPool(16, 1, 5000);
+        pool.acquire();
+        Thread.currentThread().interrupt();
+        try {
+            pool.acquire();
+            fail("Expected the wait to be interrupted");
+        } catch (final InterruptedIOException e) {
+            // The interrupt is kept for the caller
+            assertTrue(Thread.interrupted());
+        }
+    }
+}
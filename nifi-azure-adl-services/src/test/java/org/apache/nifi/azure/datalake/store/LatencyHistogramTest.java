@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEveryValueFallsWithinItsBucket() {
+        for (long micros = 0; micros < 100000; micros++) {
+            final int index = LatencyHistogram.indexOf(micros);
+            assertTrue(micros <= LatencyHistogram.upperBoundOf(index));
+            assertTrue(index == 0 || micros > LatencyHistogram.upperBoundOf(index - 1));
+        }
+        final int last = LatencyHistogram.indexOf(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(last));
+    }
+
+    @Test
+    public void testPercentilesAreWithinBucketError() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        // 1 ms to 1000 ms, one each
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertWithin(500000, snapshot.getValueAtQuantile(0.5));
+        assertWithin(990000, snapshot.getValueAtQuantile(0.99));
+        assertWithin(1000000, snapshot.getValueAtQuantile(1.0));
+    }
+
+    @Test
+    public void testSnapshotDifferenceCoversOnlyTheInterval() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(TimeUnit.SECONDS.toNanos(1));
+        }
+        final LatencyHistogram.Snapshot earlier = histogram.snapshot();
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+        }
+
+        final LatencyHistogram.Snapshot interval = histogram.snapshot().minus(earlier);
+        assertEquals(10, interval.getCount());
+        assertWithin(2000, interval.getValueAtQuantile(0.99));
+        assertEquals(0, new LatencyHistogram().snapshot().getValueAtQuantile(0.5));
+    }
+
+    private static void assertWithin(final long expectedMicros, final long actualMicros) {
+        assertTrue("expected about " + expectedMicros + " but was " + actualMicros,
+                actualMicros >= expectedMicros && actualMicros <= expectedMicros * 1.125);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MetadataCacheTest {
+
+    @Test
+    public void testEntriesExpireAfterTtl() throws InterruptedException {
+        final MetadataCache<String> cache = new MetadataCache<>(50, 10);
+        cache.put("/a", "a", cache.getGeneration());
+        assertEquals("a", cache.get("/a"));
+
+        Thread.sleep(100);
+        assertNull(cache.get("/a"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testResultLoadedBeforeInvalidationIsNotStored() {
+        final MetadataCache<String> cache = new MetadataCache<>(60000, 10);
+        final long generation = cache.getGeneration();
+        cache.invalidate("/a");
+        cache.put("/a", "stale", generation);
+        assertNull(cache.get("/a"));
+
+        cache.put("/a", "fresh", cache.getGeneration());
+        assertEquals("fresh", cache.get("/a"));
+    }
+
+    @Test
+    public void testInvalidatingAnotherPathDoesNotDiscardResult() {
+        final MetadataCache<String> cache = new MetadataCache<>(60000, 10);
+        final long generation = cache.getGeneration();
+        cache.invalidate("/b");
+        cache.invalidateTree("/data/other");
+        cache.put("/data/a", "a", generation);
+        assertEquals("a", cache.get("/data/a"));
+
+        // Invalidating a tree that contains the path still discards it
+        final long before = cache.getGeneration();
+        cache.invalidateTree("/data");
+        cache.put("/data/a", "stale", before);
+        assertNull(cache.get("/data/a"));
+    }
+
+    @Test
+    public void testResultLoadedBeforeForgottenInvalidationIsNotStored() {
+        final MetadataCache<String> cache = new MetadataCache<>(60000, 2);
+        final long generation = cache.getGeneration();
+        cache.invalidate("/a");
+        // Pushes the invalidation of /a out of the records
+        cache.invalidate("/b");
+        cache.invalidate("/c");
+        cache.put("/a", "stale", generation);
+        assertNull(cache.get("/a"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        final MetadataCache<String> cache = new MetadataCache<>(60000, 2);
+        cache.put("/a", "a", cache.getGeneration());
+        cache.put("/b", "b", cache.getGeneration());
+        // Reading /a makes /b the least recently used
+        assertEquals("a", cache.get("/a"));
+        cache.put("/c", "c", cache.getGeneration());
+
+        assertNull(cache.get("/b"));
+        assertEquals("a", cache.get("/a"));
+        assertEquals("c", cache.get("/c"));
+    }
+
+    @Test
+    public void testInvalidateTreeRemovesOnlyPathAndDescendants() {
+        final MetadataCache<String> cache = new MetadataCache<>(60000, 10);
+        for (final String path : new String[]{"/data", "/data/x", "/data/x/y", "/database", "/other"}) {
+            cache.put(path, path, cache.getGeneration());
+        }
+        cache.invalidateTree("/data");
+
+        assertNull(cache.get("/data"));
+        assertNull(cache.get("/data/x"));
+        assertNull(cache.get("/data/x/y"));
+        assertEquals("/database", cache.get("/database"));
+        assertEquals("/other", cache.get("/other"));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RefreshingApplicationTokenCredentialsTest {
+
+    private CountingCredentials credentials;
+
+    @Before
+    public void setUp() {
+        credentials = new CountingCredentials();
+    }
+
+    @Test
+    public void testTokenIsAcquiredOnceAndCached() throws IOException {
+        assertEquals("token-1", credentials.getToken());
+        assertEquals("token-1", credentials.getToken());
+        assertEquals(1, credentials.requests);
+        assertEquals(1, credentials.getRefreshCount());
+    }
+
+    @Test
+    public void testRefreshesRightAfterAnotherAreCoalesced() throws IOException {
+        credentials.getToken();
+        credentials.refreshToken();
+        credentials.refreshToken();
+        assertEquals(1, credentials.requests);
+        assertEquals("token-1", credentials.getToken());
+    }
+
+    @Test
+    public void testBackgroundRefreshReplacesToken() throws IOException {
+        credentials.getToken();
+        assertTrue(credentials.refreshIfIdle());
+        assertEquals("token-2", credentials.getToken());
+        assertEquals(2, credentials.getRefreshCount());
+        assertTrue(credentials.getLastRefreshDurationMillis() >= 0);
+    }
+
+    @Test
+    public void testFailedRefreshKeepsPreviousToken() throws IOException {
+        credentials.getToken();
+        credentials.failing = true;
+        try {
+            credentials.refreshIfIdle();
+            fail("Expected the refresh to fail");
+        } catch (final IOException e) {
+            // expected
+        }
+        assertEquals("token-1", credentials.getToken());
+        assertEquals(1, credentials.getRefreshFailureCount());
+        assertEquals(1, credentials.getRefreshCount());
+    }
+
+    private static class CountingCredentials extends RefreshingApplicationTokenCredentials {
+
+        private int requests;
+        private boolean failing;
+
+        private CountingCredentials() {
+            super("client", "tenant", "secret");
+        }
+
+        @Override
+        String requestToken() throws IOException {
+            if (failing) {
+                throw new IOException("token endpoint unavailable");
+            }
+            return "token-" + ++requests;
+        }
+    }
+}
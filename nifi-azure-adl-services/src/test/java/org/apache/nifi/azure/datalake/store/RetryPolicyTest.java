@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import com.microsoft.azure.CloudException;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+import retrofit2.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    private static CloudException error(final int status, final String retryAfter) {
+        final okhttp3.Response.Builder raw = new okhttp3.Response.Builder()
+                .code(status)
+                .message("status " + status)
+                .protocol(Protocol.HTTP_1_1)
+                .request(new Request.Builder().url("https://localhost/").build())
+                .headers(retryAfter == null ? new Headers.Builder().build() : new Headers.Builder().add("Retry-After", retryAfter).build());
+        final CloudException e = new CloudException("status " + status);
+        e.setResponse(Response.<ResponseBody>error(ResponseBody.create(MediaType.parse("application/json"), "{}"), raw.build()));
+        return e;
+    }
+
+    @Test
+    public void testBackoffStaysWithinExponentialCeiling() {
+        final RetryPolicy policy = new RetryPolicy(10, 100, 1000);
+        for (int i = 0; i < 1000; i++) {
+            final long first = policy.getBackoffMillis(0, -1);
+            assertTrue(first >= 0 && first <= 100);
+            final long third = policy.getBackoffMillis(2, -1);
+            assertTrue(third >= 0 && third <= 400);
+            final long late = policy.getBackoffMillis(40, -1);
+            assertTrue(late >= 0 && late <= 1000);
+        }
+    }
+
+    @Test
+    public void testBackoffHonorsRetryAfterUpToMaximum() {
+        final RetryPolicy policy = new RetryPolicy(10, 10, 1000);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.getBackoffMillis(0, 500) >= 500);
+            assertTrue(policy.getBackoffMillis(0, 5000) <= 1000);
+        }
+    }
+
+    @Test
+    public void testOnlyThrottlingIsSafeForEveryOperation() {
+        assertTrue(RetryPolicy.isThrottled(error(429, null)));
+        assertTrue(RetryPolicy.isThrottled(error(503, null)));
+        assertFalse(RetryPolicy.isThrottled(error(500, null)));
+        assertFalse(RetryPolicy.isThrottled(error(408, null)));
+
+        assertTrue(RetryPolicy.isRetryable(error(500, null)));
+        assertTrue(RetryPolicy.isRetryable(error(504, null)));
+        assertFalse(RetryPolicy.isRetryable(error(404, null)));
+        assertFalse(RetryPolicy.isRetryable(error(409, null)));
+    }
+
+    @Test
+    public void testRetryAfterHeader() {
+        assertEquals(3000, RetryPolicy.getRetryAfterMillis(error(429, "3")));
+        assertEquals(-1, RetryPolicy.getRetryAfterMillis(error(429, null)));
+        assertEquals(-1, RetryPolicy.getRetryAfterMillis(error(429, "Wed, 21 Oct 2015 07:28:00 GMT")));
+        assertEquals(-1, RetryPolicy.getRetryAfterMillis(new CloudException("no response")));
+    }
+}
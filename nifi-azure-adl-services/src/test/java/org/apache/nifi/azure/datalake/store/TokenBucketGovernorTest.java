@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.nifi.azure.datalake.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketGovernorTest {
+
+    @Test
+    public void testFullBucketIsAvailableAtOnce() throws InterruptedException {
+        final TokenBucketGovernor governor = new TokenBucketGovernor(1000);
+        final long start = System.nanoTime();
+        governor.acquire(1000, RequestPriority.NORMAL);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 200);
+    }
+
+    @Test
+    public void testOversizedRequestLeavesBucketInDebt() throws InterruptedException {
+        final TokenBucketGovernor governor = new TokenBucketGovernor(1000);
+        governor.acquire(1500, RequestPriority.NORMAL);
+
+        // 500 tokens of debt plus the one requested at 1000 per second
+        final long start = System.nanoTime();
+        governor.acquire(1, RequestPriority.NORMAL);
+        final long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("waited " + waitedMillis + " ms", waitedMillis >= 400);
+    }
+
+    @Test
+    public void testWaitingClassesShareByWeight() throws InterruptedException {
+        final TokenBucketGovernor governor = new TokenBucketGovernor(2000);
+        governor.acquire(2000, RequestPriority.NORMAL);
+
+        final AtomicLong highGranted = new AtomicLong();
+        final AtomicLong lowGranted = new AtomicLong();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(consumer(governor, RequestPriority.HIGH, highGranted, deadline));
+            threads.add(consumer(governor, RequestPriority.LOW, lowGranted, deadline));
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        // HIGH has four times the weight of LOW
+        final double ratio = highGranted.get() / (double) Math.max(1, lowGranted.get());
+        assertTrue("HIGH got " + highGranted + " and LOW got " + lowGranted, ratio > 2.5 && ratio < 6);
+    }
+
+    private static Thread consumer(final TokenBucketGovernor governor, final RequestPriority priority, final AtomicLong granted, final long deadline) {
+        return new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        governor.acquire(20, priority);
+                        granted.addAndGet(20);
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+}